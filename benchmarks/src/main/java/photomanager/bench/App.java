@@ -0,0 +1,261 @@
+package photomanager.bench;
+
+import java.awt.Container;
+import java.awt.LayoutManager;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * 程序的类都在默认包中，而JMH要求基准类在具名包里，具名包不能直接引用默认包，这里用MethodHandle桥接。
+ * 句柄都是static final常量，JIT会把调用内联，额外开销可以忽略。
+ */
+final class App {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private static final Class<?> WRAP_LAYOUT = load("WrapLayout");
+    private static final Class<?> SELECTION = load("ThumbnailSelectionModel");
+    private static final Class<?> DECODER = load("ThumbnailDecoder");
+    private static final Class<?> SORTER = load("ThumbnailSorter");
+    private static final Class<?> SORT_MODE = load("ThumbnailSorter$SortMode");
+    private static final Class<?> FILTER = load("ThumbnailSorter$Filter");
+    private static final Class<?> METADATA_ARRAY = load("[LImageMetadata;");
+
+    private static final MethodHandle DECODE = staticMethod(DECODER, "decode",
+        MethodType.methodType(BufferedImage.class, File.class, int.class));
+    private static final MethodHandle SCALE_TO_FIT = staticMethod(DECODER, "scaleToFit",
+        MethodType.methodType(BufferedImage.class, BufferedImage.class, int.class));
+
+    private static final MethodHandle NEW_WRAP_LAYOUT = constructor(WRAP_LAYOUT,
+        MethodType.methodType(void.class, int.class, int.class, int.class), LayoutManager.class);
+    private static final MethodHandle INVALIDATE_ALL = virtual(WRAP_LAYOUT, "invalidateAll",
+        MethodType.methodType(void.class), LayoutManager.class);
+    private static final MethodHandle COLLECT_INTERSECTING = virtual(WRAP_LAYOUT, "collectIntersecting",
+        MethodType.methodType(void.class, Container.class, Rectangle.class, BitSet.class), LayoutManager.class);
+
+    private static final MethodHandle NEW_SELECTION = constructor(SELECTION, MethodType.methodType(void.class), Object.class);
+    private static final MethodHandle SELECT_ALL = virtual(SELECTION, "selectAll",
+        MethodType.methodType(void.class, int.class), Object.class);
+    private static final MethodHandle CLEAR = virtual(SELECTION, "clear", MethodType.methodType(void.class), Object.class);
+    private static final MethodHandle SET_RANGE = virtual(SELECTION, "setRange",
+        MethodType.methodType(void.class, int.class, int.class, boolean.class), Object.class);
+    private static final MethodHandle SET_SELECTION = virtual(SELECTION, "setSelection",
+        MethodType.methodType(void.class, BitSet.class), Object.class);
+    private static final MethodHandle CLICK = virtual(SELECTION, "click",
+        MethodType.methodType(void.class, int.class, boolean.class, boolean.class), Object.class);
+    private static final MethodHandle NEXT_SELECTED = virtual(SELECTION, "nextSelected",
+        MethodType.methodType(int.class, int.class), Object.class);
+    private static final MethodHandle SELECTED_COUNT = virtual(SELECTION, "getSelectedCount",
+        MethodType.methodType(int.class), Object.class);
+    private static final MethodHandle REMOVE_INDICES = virtual(SELECTION, "removeIndices",
+        MethodType.methodType(void.class, BitSet.class), Object.class);
+
+    private static final MethodHandle BUILD_SORTER = staticMethod(SORTER, "build",
+        MethodType.methodType(SORTER, List.class, METADATA_ARRAY))
+        .asType(MethodType.methodType(Object.class, List.class, Object[].class));
+    private static final MethodHandle ORDER = virtual(SORTER, "order",
+        MethodType.methodType(int[].class, SORT_MODE, boolean.class, FILTER), Object.class)
+        .asType(MethodType.methodType(int[].class, Object.class, Object.class, boolean.class, Object.class));
+
+    private App() {}
+
+    // ---- ThumbnailDecoder ----
+
+    static BufferedImage decode(File file, int maxSize) {
+        try {
+            return (BufferedImage) DECODE.invokeExact(file, maxSize);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static BufferedImage scaleToFit(BufferedImage image, int maxSize) {
+        try {
+            return (BufferedImage) SCALE_TO_FIT.invokeExact(image, maxSize);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    // ---- WrapLayout ----
+
+    static LayoutManager newWrapLayout(int align, int hgap, int vgap) {
+        try {
+            return (LayoutManager) NEW_WRAP_LAYOUT.invokeExact(align, hgap, vgap);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void invalidateAll(LayoutManager layout) {
+        try {
+            INVALIDATE_ALL.invokeExact(layout);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void collectIntersecting(LayoutManager layout, Container target, Rectangle rect, BitSet hits) {
+        try {
+            COLLECT_INTERSECTING.invokeExact(layout, target, rect, hits);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    // ---- ThumbnailSelectionModel ----
+
+    static Object newSelectionModel() {
+        try {
+            return (Object) NEW_SELECTION.invokeExact();
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void selectAll(Object model, int count) {
+        try {
+            SELECT_ALL.invokeExact(model, count);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void clear(Object model) {
+        try {
+            CLEAR.invokeExact(model);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void setRange(Object model, int from, int to, boolean value) {
+        try {
+            SET_RANGE.invokeExact(model, from, to, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void setSelection(Object model, BitSet selection) {
+        try {
+            SET_SELECTION.invokeExact(model, selection);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void click(Object model, int index, boolean toggle, boolean extend) {
+        try {
+            CLICK.invokeExact(model, index, toggle, extend);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static int nextSelected(Object model, int fromIndex) {
+        try {
+            return (int) NEXT_SELECTED.invokeExact(model, fromIndex);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static int selectedCount(Object model) {
+        try {
+            return (int) SELECTED_COUNT.invokeExact(model);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void removeIndices(Object model, BitSet removed) {
+        try {
+            REMOVE_INDICES.invokeExact(model, removed);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    // ---- ThumbnailSorter ----
+
+    static Object buildSorter(List<File> files) {
+        try {
+            return (Object) BUILD_SORTER.invokeExact(files, (Object[]) null);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /** mode为ThumbnailSorter.SortMode的常量名 */
+    static Object sortMode(String mode) {
+        for (Object constant : SORT_MODE.getEnumConstants()) {
+            if (((Enum<?>) constant).name().equals(mode)) return constant;
+        }
+        throw new IllegalArgumentException(mode);
+    }
+
+    static Object noFilter() {
+        try {
+            return FILTER.getField("NONE").get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static int[] order(Object sorter, Object mode, boolean descending, Object filter) {
+        try {
+            return (int[]) ORDER.invokeExact(sorter, mode, descending, filter);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    // ---- 查找 ----
+
+    private static Class<?> load(String name) {
+        try {
+            return Class.forName(name, true, App.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("photomanager classes are not on the classpath", e);
+        }
+    }
+
+    private static MethodHandle staticMethod(Class<?> owner, String name, MethodType type) {
+        try {
+            return LOOKUP.findStatic(owner, name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 接收者统一成receiverType，调用处不需要引用默认包中的类
+    private static MethodHandle virtual(Class<?> owner, String name, MethodType type, Class<?> receiverType) {
+        try {
+            MethodHandle handle = LOOKUP.findVirtual(owner, name, type);
+            return handle.asType(handle.type().changeParameterType(0, receiverType));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle constructor(Class<?> owner, MethodType type, Class<?> resultType) {
+        try {
+            MethodHandle handle = LOOKUP.findConstructor(owner, type);
+            return handle.asType(handle.type().changeReturnType(resultType));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) return (RuntimeException) t;
+        if (t instanceof Error) throw (Error) t;
+        return new IllegalStateException(t);
+    }
+}
@@ -0,0 +1,21 @@
+package photomanager.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * benchmarks.jar的入口。没有指定-rf时默认把结果写成JSON（jmh-result.json），便于与上次的结果比对、发现性能回退；
+ * 其余参数原样交给JMH，例如只运行匹配的基准："java -jar benchmarks.jar WrapLayout -p components=1000"。
+ */
+public final class BenchmarkMain {
+    private BenchmarkMain() {}
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-rf")) {
+            options.addAll(0, List.of("-rf", "json", "-rff", "jmh-result.json"));
+        }
+        org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,92 @@
+package photomanager.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 打开目录时列出图片文件的几种方式，以及随后构建排序键（每个文件读一次属性）的开销。
+ * 目录在页缓存中，测的是系统调用和对象分配，不是磁盘寻道。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class DirectoryListingBenchmark {
+    @Param({"1000", "10000"})
+    public int files;
+
+    private File dir;
+    private List<File> images;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Fixtures.listingDirectory(files);
+        images = listNamesThenIsFile();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixtures.deleteRecursively(dir);
+    }
+
+    /** ThumbnailPanel.loadImages的做法：每个目录项都先isFile再看扩展名 */
+    @Benchmark
+    public File[] listFilesIsFileFirst() {
+        return dir.listFiles(f -> f.isFile() && Fixtures.isImageName(f.getName()));
+    }
+
+    /** 先按名字过滤，只对扩展名符合的项调用isFile */
+    @Benchmark
+    public List<File> listNamesThenIsFile() {
+        String[] names = dir.list();
+        List<File> result = new ArrayList<>(names.length);
+        for (String name : names) {
+            if (!Fixtures.isImageName(name)) continue;
+            File file = new File(dir, name);
+            if (file.isFile()) result.add(file);
+        }
+        return result;
+    }
+
+    /** NIO目录流，属性一并读出，之后可以直接用来统计大小 */
+    @Benchmark
+    public List<Path> directoryStreamWithAttributes() throws IOException {
+        List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir.toPath())) {
+            for (Path path : stream) {
+                if (!Fixtures.isImageName(path.getFileName().toString())) continue;
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                if (attrs.isRegularFile()) result.add(path);
+            }
+        }
+        return result;
+    }
+
+    /** 目录加载完后构建排序键：每个文件一次属性读取加文件名自然排序 */
+    @Benchmark
+    public Object buildSortKeys() {
+        return App.buildSorter(images);
+    }
+}
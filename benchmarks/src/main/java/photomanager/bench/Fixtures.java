@@ -0,0 +1,143 @@
+package photomanager.bench;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * 基准用的合成数据，全部在临时目录中生成，不依赖网络和真实照片。
+ */
+final class Fixtures {
+    private Fixtures() {}
+
+    static File createTempDir() throws IOException {
+        return Files.createTempDirectory("photomanager-bench").toFile();
+    }
+
+    static void deleteRecursively(File dir) throws IOException {
+        if (dir == null || !dir.exists()) return;
+        try (Stream<java.nio.file.Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    /**
+     * 接近照片统计特征的图像：大块渐变加纹理和噪声，JPEG压缩后的大小和解码开销与真实照片相当，
+     * 而纯色或纯渐变图会被压缩得过小，解码快得不真实。
+     */
+    static BufferedImage photo(int width, int height, long seed) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(seed);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double texture = Math.sin(x * 0.05 + y * 0.03) * 24 + Math.sin(x * 0.011 - y * 0.017) * 40;
+                int noise = random.nextInt(24);
+                int r = clamp(x * 200 / width + texture + noise);
+                int g = clamp(y * 200 / height - texture / 2 + noise);
+                int b = clamp(128 + texture + noise);
+                row[x] = r << 16 | g << 8 | b;
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return image;
+    }
+
+    private static int clamp(double v) {
+        return (int) Math.max(0, Math.min(255, v));
+    }
+
+    static byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 写入JPEG；embeddedPreview为true时像相机一样在APP1中附带160x120的EXIF预览图。
+     */
+    static File writeJpeg(File dir, String name, BufferedImage image, boolean embeddedPreview) throws IOException {
+        byte[] jpeg = encodeJpeg(image, 0.9f);
+        File file = new File(dir, name);
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            if (embeddedPreview) {
+                BufferedImage preview = new BufferedImage(160, 120, BufferedImage.TYPE_INT_RGB);
+                preview.createGraphics().drawImage(image, 0, 0, 160, 120, null);
+                // SOI之后插入APP1，其余原样写出
+                out.write(jpeg, 0, 2);
+                out.write(exifSegment(encodeJpeg(preview, 0.8f)));
+                out.write(jpeg, 2, jpeg.length - 2);
+            } else {
+                out.write(jpeg);
+            }
+        }
+        return file;
+    }
+
+    // APP1: "Exif\0\0" + 小端TIFF，IFD0为空，IFD1记录预览图的偏移和长度
+    private static byte[] exifSegment(byte[] preview) {
+        int ifd0 = 8;
+        int ifd1 = ifd0 + 2 + 4;
+        int data = ifd1 + 2 + 2 * 12 + 4;
+        ByteBuffer tiff = ByteBuffer.allocate(data + preview.length).order(ByteOrder.LITTLE_ENDIAN);
+        tiff.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(ifd0);
+        tiff.putShort((short) 0).putInt(ifd1);
+        tiff.putShort((short) 2);
+        tiff.putShort((short) 0x0201).putShort((short) 4).putInt(1).putInt(data);
+        tiff.putShort((short) 0x0202).putShort((short) 4).putInt(1).putInt(preview.length);
+        tiff.putInt(0);
+        tiff.put(preview);
+
+        byte[] header = "Exif\0\0".getBytes(java.nio.charset.StandardCharsets.ISO_8859_1);
+        int length = 2 + header.length + tiff.capacity();
+        ByteBuffer segment = ByteBuffer.allocate(2 + length);
+        segment.put((byte) 0xFF).put((byte) 0xE1).putShort((short) length).put(header).put(tiff.array());
+        return segment.array();
+    }
+
+    /**
+     * 模拟照片目录：约八成是图片，其余是伴随文件（RAW的xmp、视频等），另有几个子目录。
+     * 文件内容为空，列目录的开销只与目录项数量和文件属性读取有关。
+     */
+    static File listingDirectory(int files) throws IOException {
+        File dir = createTempDir();
+        String[] extensions = {".jpg", ".JPG", ".jpeg", ".png", ".jpg", ".jpg", ".gif", ".bmp", ".xmp", ".mp4"};
+        for (int i = 0; i < files; i++) {
+            new File(dir, String.format("IMG_%05d%s", i, extensions[i % extensions.length])).createNewFile();
+        }
+        for (int i = 0; i < 8; i++) {
+            new File(dir, "album" + i + ".jpg").mkdir(); // 名字像图片的目录也要被过滤掉
+        }
+        return dir;
+    }
+
+    /** 与ThumbnailPanel.isImageFile相同的扩展名判断 */
+    static boolean isImageName(String name) {
+        String lower = name.toLowerCase();
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg")
+            || lower.endsWith(".png") || lower.endsWith(".gif")
+            || lower.endsWith(".bmp");
+    }
+}
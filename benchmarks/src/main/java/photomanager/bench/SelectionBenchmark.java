@@ -0,0 +1,107 @@
+package photomanager.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ThumbnailSelectionModel的常见操作。没有注册监听器，只衡量模型本身；界面上的开销取决于重绘的格子数。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class SelectionBenchmark {
+    // 框选模拟用的列数，与1200像素宽的网格一致
+    private static final int COLUMNS = 7;
+
+    @Param({"10000", "100000"})
+    public int items;
+
+    private Object model;
+    private BitSet[] rubberBandFrames;
+    private BitSet everyTenth;
+    private int frame;
+    private int toggleIndex;
+
+    @Setup
+    public void setUp() {
+        model = App.newSelectionModel();
+        // 框选从中部向下拖动，每帧多覆盖一行
+        int startRow = items / COLUMNS / 2;
+        rubberBandFrames = new BitSet[40];
+        for (int f = 0; f < rubberBandFrames.length; f++) {
+            BitSet frameHits = new BitSet();
+            for (int row = startRow; row <= startRow + f; row++) {
+                frameHits.set(row * COLUMNS + 1, row * COLUMNS + 5);
+            }
+            rubberBandFrames[f] = frameHits;
+        }
+        everyTenth = new BitSet(items);
+        for (int i = 0; i < items; i += 10) {
+            everyTenth.set(i);
+        }
+    }
+
+    @Benchmark
+    public int selectAllThenClear() {
+        App.selectAll(model, items);
+        int count = App.selectedCount(model);
+        App.clear(model);
+        return count;
+    }
+
+    /** 单击第一张再Shift+单击最后一张 */
+    @Benchmark
+    public int shiftClickRange() {
+        App.click(model, 0, false, false);
+        App.click(model, items - 1, false, true);
+        return App.selectedCount(model);
+    }
+
+    @Benchmark
+    public void ctrlClickToggle() {
+        toggleIndex = (toggleIndex + 7919) % items;
+        App.click(model, toggleIndex, true, false);
+    }
+
+    /** 拖动框选时每帧整体替换选择集合 */
+    @Benchmark
+    public void rubberBandFrame() {
+        App.setSelection(model, rubberBandFrames[frame]);
+        frame = (frame + 1) % rubberBandFrames.length;
+    }
+
+    /** 复制、删除等操作遍历选中项 */
+    @Benchmark
+    public long iterateHalfSelected() {
+        App.clear(model);
+        App.setRange(model, items / 4, items / 4 * 3, true);
+        long sum = 0;
+        for (int i = App.nextSelected(model, 0); i >= 0; i = App.nextSelected(model, i + 1)) {
+            sum += i;
+        }
+        return sum;
+    }
+
+    /** 删除文件后选择下标整体前移 */
+    @Benchmark
+    public int removeEveryTenth() {
+        App.setRange(model, 0, items, true);
+        App.removeIndices(model, everyTenth);
+        return App.selectedCount(model);
+    }
+}
@@ -0,0 +1,90 @@
+package photomanager.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 从文件到缩略图的完整耗时：最初的ImageIO.read + getScaledInstance，整图解码后逐级缩放，
+ * 以及ThumbnailDecoder当前的做法（有EXIF预览图时直接用，否则子采样读取）。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class ThumbnailDecodeBenchmark {
+    // 与ThumbnailPanel.THUMB_SIZE相同
+    private static final int THUMB_SIZE = 150;
+
+    @Param({"1600x1200", "4000x3000"})
+    public String size;
+
+    @Param({"false", "true"})
+    public boolean embeddedPreview;
+
+    private File dir;
+    private File jpeg;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] parts = size.split("x");
+        dir = Fixtures.createTempDir();
+        jpeg = Fixtures.writeJpeg(dir, "photo.jpg",
+            Fixtures.photo(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), 42), embeddedPreview);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixtures.deleteRecursively(dir);
+    }
+
+    /** 最初的实现：整图解码后用SCALE_SMOOTH缩放，ImageIcon同步等待缩放完成 */
+    @Benchmark
+    public BufferedImage readAndGetScaledInstance() throws IOException {
+        BufferedImage original = ImageIO.read(jpeg);
+        int[] target = fit(original.getWidth(), original.getHeight());
+        Image scaled = original.getScaledInstance(target[0], target[1], Image.SCALE_SMOOTH);
+        BufferedImage result = new BufferedImage(target[0], target[1], BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = result.createGraphics();
+        g.drawImage(new ImageIcon(scaled).getImage(), 0, 0, null);
+        g.dispose();
+        return result;
+    }
+
+    /** 整图解码，缩放换成ThumbnailDecoder的逐级减半双线性缩放 */
+    @Benchmark
+    public BufferedImage readAndScaleToFit() throws IOException {
+        return App.scaleToFit(ImageIO.read(jpeg), THUMB_SIZE);
+    }
+
+    /** 当前实现 */
+    @Benchmark
+    public BufferedImage thumbnailDecoder() {
+        return App.decode(jpeg, THUMB_SIZE);
+    }
+
+    static int[] fit(int width, int height) {
+        double ratio = Math.min((double) THUMB_SIZE / width, (double) THUMB_SIZE / height);
+        return new int[] {Math.max(1, (int) Math.round(width * ratio)), Math.max(1, (int) Math.round(height * ratio))};
+    }
+}
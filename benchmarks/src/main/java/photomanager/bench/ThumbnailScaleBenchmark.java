@@ -0,0 +1,73 @@
+package photomanager.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.ImageIcon;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 只比较缩放：源图已经在内存中，不含解码时间。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class ThumbnailScaleBenchmark {
+    private static final int THUMB_SIZE = 150;
+
+    @Param({"800x600", "4000x3000"})
+    public String size;
+
+    private BufferedImage source;
+    private int[] target;
+
+    @Setup
+    public void setUp() {
+        String[] parts = size.split("x");
+        source = Fixtures.photo(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), 7);
+        target = ThumbnailDecodeBenchmark.fit(source.getWidth(), source.getHeight());
+    }
+
+    @Benchmark
+    public BufferedImage getScaledInstanceSmooth() {
+        Image scaled = source.getScaledInstance(target[0], target[1], Image.SCALE_SMOOTH);
+        BufferedImage result = new BufferedImage(target[0], target[1], BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = result.createGraphics();
+        g.drawImage(new ImageIcon(scaled).getImage(), 0, 0, null);
+        g.dispose();
+        return result;
+    }
+
+    /** 一次drawImage双线性缩放，最快但大比例缩小时有明显锯齿，作为下限参考 */
+    @Benchmark
+    public BufferedImage singleBilinearDraw() {
+        BufferedImage result = new BufferedImage(target[0], target[1], BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = result.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(source, 0, 0, target[0], target[1], null);
+        g.dispose();
+        return result;
+    }
+
+    /** ThumbnailDecoder使用的逐级减半双线性缩放 */
+    @Benchmark
+    public BufferedImage progressiveBilinear() {
+        return App.scaleToFit(source, THUMB_SIZE);
+    }
+}
@@ -0,0 +1,74 @@
+package photomanager.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 网格重新排序：排序键已经建好，只衡量ThumbnailSorter.order本身。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class ThumbnailSortBenchmark {
+    @Param({"20000"})
+    public int files;
+
+    @Param({"NAME", "MODIFIED"})
+    public String mode;
+
+    private File dir;
+    private Object sorter;
+    private Object sortMode;
+    private Object filter;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Fixtures.listingDirectory(files);
+        List<File> images = new ArrayList<>();
+        java.util.Random random = new java.util.Random(3);
+        for (File file : dir.listFiles()) {
+            if (file.isFile() && Fixtures.isImageName(file.getName())) {
+                // 打乱修改时间，避免与文件名顺序一致
+                file.setLastModified(1_600_000_000_000L + random.nextInt(1_000_000_000));
+                images.add(file);
+            }
+        }
+        sorter = App.buildSorter(images);
+        sortMode = App.sortMode(mode);
+        filter = App.noFilter();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixtures.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public int[] ascending() {
+        return App.order(sorter, sortMode, false, filter);
+    }
+
+    @Benchmark
+    public int[] descending() {
+        return App.order(sorter, sortMode, true, filter);
+    }
+}
@@ -0,0 +1,92 @@
+package photomanager.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.JPanel;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.LayoutManager;
+import java.awt.Rectangle;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 组件模式网格的布局开销：完整重算、缓存命中、窗口宽度变化以及框选时的命中查询。
+ * 组件与缩略图格子同尺寸，走WrapLayout的等尺寸快速路径。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class WrapLayoutBenchmark {
+    // 与Thumbnail.CELL_SIZE相同
+    private static final int CELL_SIZE = 160;
+
+    @Param({"1000", "10000", "100000"})
+    public int components;
+
+    private LayoutManager layout;
+    private JPanel container;
+    private Rectangle rubberBand;
+    private final BitSet hits = new BitSet();
+    private boolean wide;
+
+    @Setup
+    public void setUp() {
+        layout = App.newWrapLayout(FlowLayout.LEFT, 10, 10);
+        container = new JPanel(layout);
+        Dimension cell = new Dimension(CELL_SIZE, CELL_SIZE);
+        for (int i = 0; i < components; i++) {
+            JPanel thumb = new JPanel();
+            thumb.setPreferredSize(cell);
+            container.add(thumb);
+        }
+        container.setSize(1200, 800);
+        layout.layoutContainer(container);
+        // 网格中部约一屏大小的框选区域
+        Dimension size = layout.preferredLayoutSize(container);
+        rubberBand = new Rectangle(100, size.height / 2, 900, 600);
+    }
+
+    @Benchmark
+    public Dimension fullLayout() {
+        App.invalidateAll(layout);
+        Dimension size = layout.preferredLayoutSize(container);
+        layout.layoutContainer(container);
+        return size;
+    }
+
+    @Benchmark
+    public Dimension cachedPreferredSize() {
+        return layout.preferredLayoutSize(container);
+    }
+
+    /** 每次在两个列数不同的宽度间切换，相当于拖动窗口边缘 */
+    @Benchmark
+    public Dimension resize() {
+        wide = !wide;
+        container.setSize(wide ? 1370 : 1200, 800);
+        Dimension size = layout.preferredLayoutSize(container);
+        layout.layoutContainer(container);
+        return size;
+    }
+
+    @Benchmark
+    public int rubberBandHits() {
+        hits.clear();
+        App.collectIntersecting(layout, container, rubberBand, hits);
+        return hits.cardinality();
+    }
+}
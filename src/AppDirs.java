@@ -0,0 +1,48 @@
+import java.io.File;
+
+/**
+ * 程序自身数据的存放目录，按操作系统习惯区分缓存目录和配置目录。
+ */
+public class AppDirs {
+    private static final String APP_NAME = "photo-manager";
+
+    private AppDirs() {}
+
+    /**
+     * 可随时删除重建的数据（缩略图缓存等）。
+     */
+    public static File cacheDir() {
+        String os = System.getProperty("os.name", "").toLowerCase();
+        String home = System.getProperty("user.home");
+        File base;
+        if (os.contains("win")) {
+            String local = System.getenv("LOCALAPPDATA");
+            base = local != null ? new File(local) : new File(home, "AppData/Local");
+        } else if (os.contains("mac")) {
+            base = new File(home, "Library/Caches");
+        } else {
+            String xdg = System.getenv("XDG_CACHE_HOME");
+            base = xdg != null && !xdg.isEmpty() ? new File(xdg) : new File(home, ".cache");
+        }
+        return new File(base, APP_NAME);
+    }
+
+    /**
+     * 需要保留的用户数据（上次会话等）。
+     */
+    public static File configDir() {
+        String os = System.getProperty("os.name", "").toLowerCase();
+        String home = System.getProperty("user.home");
+        File base;
+        if (os.contains("win")) {
+            String roaming = System.getenv("APPDATA");
+            base = roaming != null ? new File(roaming) : new File(home, "AppData/Roaming");
+        } else if (os.contains("mac")) {
+            base = new File(home, "Library/Application Support");
+        } else {
+            String xdg = System.getenv("XDG_CONFIG_HOME");
+            base = xdg != null && !xdg.isEmpty() ? new File(xdg) : new File(home, ".config");
+        }
+        return new File(base, APP_NAME);
+    }
+}
@@ -0,0 +1,426 @@
+import javax.swing.*;
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * 目录树的轻量模型，代替为每个文件创建DefaultMutableTreeNode。
+ * <p>
+ * 每个目录只用两个名字数组保存子目录和图片文件，子目录节点在第一次访问时创建并缓存，
+ * 图片节点每次访问时临时创建（按父节点和名字判断相等），不常驻内存。
+ * 目录在展开时后台加载，折叠后调用 {@link #release} 丢弃其子项，
+ * 内存占用只与当前展开的部分有关。
+ * 根节点下的磁盘列表同样在后台获取，需要调用 {@link #load} 加载根节点。
+ */
+public class DirectoryTreeModel implements TreeModel {
+    private static final int UNLOADED = 0;
+    private static final int LOADING = 1;
+    private static final int LOADED = 2;
+
+    private final Node root = new Node(null, "计算机", true);
+    private final EventListenerList listeners = new EventListenerList();
+    private final Predicate<File> imageFilter;
+    private final boolean showImages;
+
+    /**
+     * @param imageFilter 判断文件是否为图片
+     * @param showImages  为false时只显示目录
+     */
+    public DirectoryTreeModel(Predicate<File> imageFilter, boolean showImages) {
+        this.imageFilter = imageFilter;
+        this.showImages = showImages;
+    }
+
+    /**
+     * 树中的目录或图片文件。
+     */
+    public static class Node {
+        private final Node parent;
+        private final String name;
+        private final boolean directory;
+        // 图片节点在父目录中的位置，用于快速查找索引
+        private int indexHint = -1;
+        private File file;
+
+        // 以下只用于目录
+        private int state = UNLOADED;
+        private String[] dirs;
+        private int dirCount;
+        private Node[] dirNodes;
+        private String[] images;
+        private int imageCount;
+        private Placeholder placeholder;
+        private DirectoryLoader loader;
+
+        private Node(Node parent, String name, boolean directory) {
+            this.parent = parent;
+            this.name = name;
+            this.directory = directory;
+        }
+
+        public File getFile() {
+            if (parent == null) return null;
+            if (file == null) {
+                // 磁盘根目录直接用名字作为路径
+                File f = parent.parent == null ? new File(name) : new File(parent.getFile(), name);
+                if (!directory) return f;
+                file = f;
+            }
+            return file;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        public Node getParent() {
+            return parent;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Node)) return false;
+            Node other = (Node) o;
+            return parent == other.parent && directory == other.directory && name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(parent) * 31 + name.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * 正在加载的目录最后显示的进度节点，选中它表示取消加载。
+     */
+    public static class Placeholder {
+        private final Node parent;
+        private String text = "正在加载...（选中此项取消）";
+
+        private Placeholder(Node parent) {
+            this.parent = parent;
+        }
+
+        public Node getParent() {
+            return parent;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    // ---- TreeModel ----
+
+    @Override
+    public Object getRoot() {
+        return root;
+    }
+
+    @Override
+    public Object getChild(Object parent, int index) {
+        Node node = (Node) parent;
+        if (index < node.dirCount) {
+            Node child = node.dirNodes[index];
+            if (child == null) {
+                child = new Node(node, node.dirs[index], true);
+                node.dirNodes[index] = child;
+            }
+            return child;
+        }
+        int image = index - node.dirCount;
+        if (image < visibleImageCount(node)) {
+            Node child = new Node(node, node.images[image], false);
+            child.indexHint = index;
+            return child;
+        }
+        return node.placeholder;
+    }
+
+    @Override
+    public int getChildCount(Object parent) {
+        if (!(parent instanceof Node)) return 0;
+        Node node = (Node) parent;
+        int count = node.dirCount + visibleImageCount(node);
+        return node.state == LOADING ? count + 1 : count;
+    }
+
+    private int visibleImageCount(Node node) {
+        return showImages ? node.imageCount : 0;
+    }
+
+    @Override
+    public boolean isLeaf(Object node) {
+        return !(node instanceof Node) || !((Node) node).directory;
+    }
+
+    @Override
+    public void valueForPathChanged(TreePath path, Object newValue) {
+        // 不支持在树中重命名
+    }
+
+    @Override
+    public int getIndexOfChild(Object parent, Object child) {
+        if (!(parent instanceof Node) || child == null) return -1;
+        Node node = (Node) parent;
+        if (child instanceof Placeholder) {
+            return child == node.placeholder ? getChildCount(node) - 1 : -1;
+        }
+        Node c = (Node) child;
+        if (c.parent != node) return -1;
+        if (c.directory) {
+            for (int i = 0; i < node.dirCount; i++) {
+                if (node.dirNodes[i] == c || (node.dirNodes[i] == null && node.dirs[i].equals(c.name))) return i;
+            }
+            return -1;
+        }
+        int count = visibleImageCount(node);
+        int hint = c.indexHint - node.dirCount;
+        if (hint >= 0 && hint < count && node.images[hint].equals(c.name)) {
+            return c.indexHint;
+        }
+        for (int i = 0; i < count; i++) {
+            if (node.images[i].equals(c.name)) return node.dirCount + i;
+        }
+        return -1;
+    }
+
+    @Override
+    public void addTreeModelListener(TreeModelListener l) {
+        listeners.add(TreeModelListener.class, l);
+    }
+
+    @Override
+    public void removeTreeModelListener(TreeModelListener l) {
+        listeners.remove(TreeModelListener.class, l);
+    }
+
+    // ---- 加载和释放 ----
+
+    public boolean isUnloaded(Node node) {
+        return node.directory && node.state == UNLOADED;
+    }
+
+    public TreePath pathOf(Node node) {
+        int depth = 0;
+        for (Node n = node; n != null; n = n.parent) depth++;
+        Object[] path = new Object[depth];
+        for (Node n = node; n != null; n = n.parent) path[--depth] = n;
+        return new TreePath(path);
+    }
+
+    /**
+     * 在后台加载目录的子项，加载过程中最后一个子节点为进度节点。
+     */
+    public void load(Node node) {
+        if (!node.directory || node.state != UNLOADED) return;
+        node.state = LOADING;
+        node.dirs = new String[16];
+        node.dirNodes = new Node[16];
+        node.images = new String[16];
+        node.placeholder = new Placeholder(node);
+        node.loader = new DirectoryLoader(node);
+        fireNodesInserted(node, new int[]{0});
+        node.loader.execute();
+    }
+
+    /**
+     * 取消正在进行的加载，已加载的子项一并丢弃。
+     */
+    public void cancel(Node node) {
+        if (node.state != LOADING) return;
+        release(node);
+    }
+
+    /**
+     * 丢弃目录的全部子项（包括正在进行的加载），下次展开时重新加载。
+     */
+    public void release(Node node) {
+        if (node == root || !node.directory || node.state == UNLOADED) return;
+        if (node.loader != null) {
+            node.loader.cancel(true);
+            node.loader = null;
+        }
+        node.state = UNLOADED;
+        node.dirs = null;
+        node.dirNodes = null;
+        node.images = null;
+        node.dirCount = 0;
+        node.imageCount = 0;
+        node.placeholder = null;
+        fireStructureChanged(node);
+    }
+
+    private static class Entry {
+        final String name;
+        final boolean directory;
+
+        Entry(String name, boolean directory) {
+            this.name = name;
+            this.directory = directory;
+        }
+    }
+
+    /**
+     * 用DirectoryStream逐项读取目录，每项只读取一次文件属性，分批追加到目录节点。
+     */
+    private class DirectoryLoader extends SwingWorker<Void, Entry> {
+        private final Node node;
+        private int loadedCount = 0;
+
+        DirectoryLoader(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        protected Void doInBackground() throws Exception {
+            if (node.parent == null) {
+                // 根节点：枚举磁盘，网络驱动器较多时可能很慢
+                File[] roots = File.listRoots();
+                if (roots != null) {
+                    for (File rootDir : roots) {
+                        publish(new Entry(rootDir.getPath(), true));
+                    }
+                }
+                return null;
+            }
+            File dir = node.getFile();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir.toPath())) {
+                for (Path path : stream) {
+                    if (isCancelled()) break;
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                    } catch (IOException e) {
+                        continue; // 无法访问的项跳过
+                    }
+                    String name = path.getFileName().toString();
+                    if (attrs.isDirectory() && FileDeleter.STAGING_DIR.equals(name)) {
+                        continue; // 删除暂存目录不显示
+                    }
+                    if (attrs.isDirectory()) {
+                        publish(new Entry(name, true));
+                    } else if (imageFilter.test(path.toFile())) {
+                        publish(new Entry(name, false));
+                    }
+                }
+            }
+            return null;
+        }
+
+        @Override
+        protected void process(List<Entry> chunks) {
+            if (isCancelled() || node.loader != this) return;
+            int oldDirCount = node.dirCount;
+            int oldImageCount = visibleImageCount(node);
+            for (Entry entry : chunks) {
+                if (entry.directory) {
+                    if (node.dirCount == node.dirs.length) {
+                        node.dirs = Arrays.copyOf(node.dirs, node.dirCount * 2);
+                        node.dirNodes = Arrays.copyOf(node.dirNodes, node.dirCount * 2);
+                    }
+                    node.dirs[node.dirCount++] = entry.name;
+                } else {
+                    if (node.imageCount == node.images.length) {
+                        node.images = Arrays.copyOf(node.images, node.imageCount * 2);
+                    }
+                    node.images[node.imageCount++] = entry.name;
+                }
+            }
+            // 目录插在图片之前，通知的索引按插入后的位置升序排列
+            int newDirs = node.dirCount - oldDirCount;
+            int newImages = visibleImageCount(node) - oldImageCount;
+            int[] indices = new int[newDirs + newImages];
+            int k = 0;
+            for (int i = oldDirCount; i < node.dirCount; i++) {
+                indices[k++] = i;
+            }
+            for (int i = 0; i < newImages; i++) {
+                indices[k++] = node.dirCount + oldImageCount + i;
+            }
+            if (indices.length > 0) {
+                fireNodesInserted(node, indices);
+            }
+
+            loadedCount += chunks.size();
+            node.placeholder.text = "正在加载... 已读取 " + loadedCount + " 项（选中此项取消）";
+            fireNodesChanged(node, new int[]{getChildCount(node) - 1}, new Object[]{node.placeholder});
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled() || node.loader != this) return;
+            try {
+                get();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            int index = getChildCount(node) - 1;
+            Placeholder placeholder = node.placeholder;
+            // 加载完成后收紧数组
+            node.dirs = Arrays.copyOf(node.dirs, node.dirCount);
+            node.dirNodes = Arrays.copyOf(node.dirNodes, node.dirCount);
+            node.images = Arrays.copyOf(node.images, node.imageCount);
+            node.state = LOADED;
+            node.loader = null;
+            node.placeholder = null;
+            fireNodesRemoved(node, new int[]{index}, new Object[]{placeholder});
+        }
+    }
+
+    // ---- 事件 ----
+
+    private Object[] childrenAt(Node node, int[] indices) {
+        Object[] children = new Object[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            children[i] = getChild(node, indices[i]);
+        }
+        return children;
+    }
+
+    private void fireNodesInserted(Node node, int[] indices) {
+        TreeModelEvent e = new TreeModelEvent(this, pathOf(node), indices, childrenAt(node, indices));
+        for (TreeModelListener l : listeners.getListeners(TreeModelListener.class)) {
+            l.treeNodesInserted(e);
+        }
+    }
+
+    private void fireNodesChanged(Node node, int[] indices, Object[] children) {
+        TreeModelEvent e = new TreeModelEvent(this, pathOf(node), indices, children);
+        for (TreeModelListener l : listeners.getListeners(TreeModelListener.class)) {
+            l.treeNodesChanged(e);
+        }
+    }
+
+    private void fireNodesRemoved(Node node, int[] indices, Object[] children) {
+        TreeModelEvent e = new TreeModelEvent(this, pathOf(node), indices, children);
+        for (TreeModelListener l : listeners.getListeners(TreeModelListener.class)) {
+            l.treeNodesRemoved(e);
+        }
+    }
+
+    private void fireStructureChanged(Node node) {
+        TreeModelEvent e = new TreeModelEvent(this, pathOf(node));
+        for (TreeModelListener l : listeners.getListeners(TreeModelListener.class)) {
+            l.treeStructureChanged(e);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * 用WatchService监视当前打开的目录。
+ * <p>
+ * 事件在后台线程中收集，目录安静一段时间后（持续写入时最长等待一个上限）合并成一批；
+ * 同一文件的多次事件只看最终状态：文件存在且符合过滤条件算作新增或修改，否则算作删除。
+ * 合并结果在EDT上回调。
+ */
+public class DirectoryWatcher {
+    private static final long QUIET_MILLIS = Long.getLong("photomanager.watchQuietMs", 300);
+    private static final long MAX_DELAY_MILLIS = 2000;
+
+    public interface Listener {
+        /**
+         * 在EDT上回调。overflow为true表示事件丢失，调用方应完整重新加载目录。
+         */
+        void directoryChanged(File dir, List<File> changed, List<File> deleted, boolean overflow);
+    }
+
+    private final Predicate<File> filter;
+    private final Listener listener;
+    private final WatchService service;
+    private volatile File requestedDir;
+    private File watchedDir;
+    private WatchKey watchedKey;
+
+    // 当前批次中涉及的文件名
+    private final Set<String> touched = new LinkedHashSet<>();
+    private boolean overflow;
+    private long firstEventTime;
+    private long lastEventTime;
+
+    public DirectoryWatcher(Predicate<File> filter, Listener listener) throws IOException {
+        this.filter = filter;
+        this.listener = listener;
+        this.service = FileSystems.getDefault().newWatchService();
+        Thread thread = new Thread(this::run, "directory-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 切换监视的目录，传null停止监视。注册在后台线程中完成。
+     */
+    public void watch(File dir) {
+        requestedDir = dir;
+    }
+
+    public void close() {
+        try {
+            service.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                switchDirectoryIfRequested();
+                WatchKey key = service.poll(Math.min(QUIET_MILLIS, 100), TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    collect(key);
+                }
+                long now = System.currentTimeMillis();
+                if ((!touched.isEmpty() || overflow)
+                        && (now - lastEventTime >= QUIET_MILLIS || now - firstEventTime >= MAX_DELAY_MILLIS)) {
+                    flush();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 停止监视
+        }
+    }
+
+    private void switchDirectoryIfRequested() {
+        File dir = requestedDir;
+        if (dir == null ? watchedDir == null : dir.equals(watchedDir)) return;
+        if (watchedKey != null) {
+            watchedKey.cancel();
+            watchedKey = null;
+        }
+        touched.clear();
+        overflow = false;
+        watchedDir = dir;
+        if (dir == null) return;
+        try {
+            watchedKey = dir.toPath().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            // 有些文件系统不支持监视，此时只能靠手动刷新
+            e.printStackTrace();
+        }
+    }
+
+    private void collect(WatchKey key) {
+        if (key == watchedKey) {
+            long now = System.currentTimeMillis();
+            if (touched.isEmpty() && !overflow) {
+                firstEventTime = now;
+            }
+            lastEventTime = now;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    overflow = true;
+                } else {
+                    touched.add(((Path) event.context()).toString());
+                }
+            }
+        } else {
+            key.pollEvents();
+        }
+        if (!key.reset() && key == watchedKey) {
+            // 目录本身被删除或不可访问
+            watchedKey = null;
+            overflow = true;
+        }
+    }
+
+    private void flush() {
+        File dir = watchedDir;
+        List<File> changed = new ArrayList<>();
+        List<File> deleted = new ArrayList<>();
+        for (String name : touched) {
+            File file = new File(dir, name);
+            if (file.isFile() && filter.test(file)) {
+                changed.add(file);
+            } else if (!file.exists()) {
+                deleted.add(file);
+            }
+        }
+        boolean lost = overflow;
+        touched.clear();
+        overflow = false;
+        if (changed.isEmpty() && deleted.isEmpty() && !lost) return;
+        SwingUtilities.invokeLater(() -> listener.directoryChanged(dir, changed, deleted, lost));
+    }
+}
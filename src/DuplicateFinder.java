@@ -0,0 +1,168 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 查找相似图片：并行计算每张图片的dHash，放入{@link HammingIndex}后按汉明距离聚类。
+ * <p>
+ * 哈希只需要9x8的灰度图，优先使用内存缓存中已有的缩略图，否则以很小的尺寸解码
+ * （JPEG通常直接用内嵌预览图）。结果按文件路径、大小和修改时间缓存，重复查找不会再解码。
+ */
+public class DuplicateFinder {
+    private static final int THREADS = Integer.getInteger("photomanager.hashThreads",
+        Runtime.getRuntime().availableProcessors());
+    // 汉明距离不超过该值视为相似
+    private static final int MAX_DISTANCE = Integer.getInteger("photomanager.similarBits", 10);
+    private static final int HASH_DECODE_SIZE = 64;
+    private static final Map<ThumbnailKey, Long> hashCache = new ConcurrentHashMap<>();
+
+    public interface Listener {
+        /**
+         * 在计算线程中回调，调用方需要自行切换到EDT。
+         */
+        void progress(int hashed, int total);
+    }
+
+    private final List<File> files;
+    private final Listener listener;
+    private volatile boolean cancelled;
+
+    public DuplicateFinder(List<File> files, Listener listener) {
+        this.files = new ArrayList<>(files);
+        this.listener = listener;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 阻塞执行，返回包含两张及以上图片的相似组，组内和组间都保持输入顺序。取消时返回null。
+     */
+    public List<List<File>> run() throws InterruptedException {
+        int n = files.size();
+        long[] hashes = new long[n];
+        boolean[] valid = new boolean[n];
+        AtomicInteger hashed = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, THREADS), r -> {
+            Thread t = new Thread(r, "image-hasher");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            for (int i = 0; i < n; i++) {
+                int index = i;
+                pool.execute(() -> {
+                    if (cancelled) return;
+                    Long hash = hash(files.get(index));
+                    if (hash != null) {
+                        hashes[index] = hash;
+                        valid[index] = true;
+                    }
+                    int done = hashed.incrementAndGet();
+                    if (listener != null) {
+                        listener.progress(done, n);
+                    }
+                });
+            }
+            pool.shutdown();
+            // awaitTermination保证各线程写入的结果对当前线程可见
+            while (!pool.awaitTermination(100, TimeUnit.MILLISECONDS)) {
+                if (cancelled) pool.shutdownNow();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        if (cancelled) return null;
+        return cluster(hashes, valid);
+    }
+
+    private List<List<File>> cluster(long[] hashes, boolean[] valid) {
+        int n = hashes.length;
+        int count = 0;
+        for (boolean v : valid) {
+            if (v) count++;
+        }
+        long[] validHashes = new long[count];
+        int[] ids = new int[count];
+        for (int i = 0, k = 0; i < n; i++) {
+            if (valid[i]) {
+                validHashes[k] = hashes[i];
+                ids[k++] = i;
+            }
+        }
+        HammingIndex index = new HammingIndex(validHashes, ids);
+        // 并查集，相似关系传递合并成组
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) parent[i] = i;
+        for (int i = 0; i < n && !cancelled; i++) {
+            if (!valid[i]) continue;
+            int self = i;
+            index.query(hashes[i], MAX_DISTANCE, j -> {
+                if (j > self) union(parent, self, j);
+            });
+        }
+        if (cancelled) return null;
+
+        Map<Integer, List<File>> groups = new java.util.LinkedHashMap<>();
+        int[] size = new int[n];
+        for (int i = 0; i < n; i++) size[find(parent, i)]++;
+        for (int i = 0; i < n; i++) {
+            int root = find(parent, i);
+            if (size[root] > 1) {
+                groups.computeIfAbsent(root, k -> new ArrayList<>()).add(files.get(i));
+            }
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    // 较小的下标做根，组按第一张图片的位置排列
+    private static void union(int[] parent, int a, int b) {
+        int ra = find(parent, a);
+        int rb = find(parent, b);
+        if (ra < rb) {
+            parent[rb] = ra;
+        } else if (rb < ra) {
+            parent[ra] = rb;
+        }
+    }
+
+    private static Long hash(File file) {
+        try {
+            ThumbnailKey key = ThumbnailKey.of(file);
+            Long cached = hashCache.get(key);
+            if (cached != null) return cached;
+            BufferedImage image = ThumbnailMemoryCache.getDefault().get(key);
+            if (image == null) {
+                image = ThumbnailDecoder.decode(file, HASH_DECODE_SIZE);
+            }
+            if (image == null) return null;
+            long hash = PerceptualHash.dHash(image);
+            hashCache.put(key, hash);
+            return hash;
+        } catch (IOException | RuntimeException e) {
+            // 无法解码的图片不参与比较
+            return null;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * 查找目录树中内容完全相同的文件，逐级缩小候选范围：
+ * <ol>
+ * <li>按文件长度分组，长度唯一的文件不可能重复，不读内容；</li>
+ * <li>对仍然同组的文件读取开头和结尾各64KB计算哈希；</li>
+ * <li>只有前两步都相同的文件才读取全文计算SHA-256。</li>
+ * </ol>
+ * 绝大多数文件在前两步就被排除，读取量比逐个计算全文哈希少几个数量级。
+ */
+public class ExactDuplicateFinder {
+    private static final int THREADS = Integer.getInteger("photomanager.hashThreads",
+        Runtime.getRuntime().availableProcessors());
+    private static final int EDGE_SIZE = 64 * 1024;
+    private static final int READ_SIZE = 1024 * 1024;
+    private static final ThreadLocal<ByteBuffer> edgeBuffer =
+        ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(EDGE_SIZE));
+    // 全文哈希用的直接缓冲区。不用内存映射：映射要等GC才释放，Windows上映射未释放的文件不能删除，
+    // 而扫描结果正是要拿去删除的
+    private static final ThreadLocal<ByteBuffer> readBuffer =
+        ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(READ_SIZE));
+
+    public interface Listener {
+        /**
+         * 在扫描线程中回调，调用方需要自行切换到EDT。stage为1到3。
+         */
+        void progress(int stage, int processed, int total);
+    }
+
+    private final File root;
+    private final Predicate<File> filter;
+    private final Listener listener;
+    private final AtomicLong bytesRead = new AtomicLong();
+    private long totalBytes;
+    private int scannedFiles;
+    private volatile boolean cancelled;
+
+    public ExactDuplicateFinder(File root, Predicate<File> filter, Listener listener) {
+        this.root = root;
+        this.filter = filter;
+        this.listener = listener;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** 扫描到的文件总字节数 */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /** 实际读取的字节数 */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public int getScannedFiles() {
+        return scannedFiles;
+    }
+
+    /**
+     * 阻塞执行，返回内容相同的文件组，组内路径最短的排在最前（通常是没有" (n)"后缀的原文件）。
+     * 取消时返回null。
+     */
+    public List<List<File>> run() throws IOException, InterruptedException {
+        Map<Long, List<File>> bySize = groupBySize();
+        if (cancelled) return null;
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, THREADS), r -> {
+            Thread t = new Thread(r, "duplicate-scanner");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<List<File>> candidates = new ArrayList<>();
+            for (List<File> group : bySize.values()) {
+                if (group.size() > 1) candidates.add(group);
+            }
+            candidates = refine(pool, candidates, 2, this::edgeHash);
+            if (cancelled) return null;
+            candidates = refine(pool, candidates, 3, this::fullHash);
+            if (cancelled) return null;
+            for (List<File> group : candidates) {
+                group.sort(Comparator.comparingInt((File f) -> f.getPath().length()).thenComparing(File::getPath));
+            }
+            candidates.sort(Comparator.comparing(group -> group.get(0).getPath()));
+            return candidates;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Map<Long, List<File>> groupBySize() throws IOException {
+        Map<Long, List<File>> bySize = new HashMap<>();
+        Files.walkFileTree(root.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (cancelled) return FileVisitResult.TERMINATE;
+                return FileDeleter.STAGING_DIR.equals(dir.getFileName() == null ? "" : dir.getFileName().toString())
+                    ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                // 空文件没有比较意义
+                if (attrs.isRegularFile() && attrs.size() > 0 && filter.test(file.toFile())) {
+                    bySize.computeIfAbsent(attrs.size(), k -> new ArrayList<>()).add(file.toFile());
+                    totalBytes += attrs.size();
+                    scannedFiles++;
+                    if (listener != null && scannedFiles % 1000 == 0) {
+                        listener.progress(1, scannedFiles, 0);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE; // 无权限的项跳过
+            }
+        });
+        return bySize;
+    }
+
+    private interface Hasher {
+        String hash(File file) throws IOException;
+    }
+
+    /**
+     * 对每组中的文件并行计算哈希，按哈希拆分，只保留仍有两个以上文件的组。读取失败的文件退出比较。
+     */
+    private List<List<File>> refine(ExecutorService pool, List<List<File>> groups, int stage, Hasher hasher)
+            throws InterruptedException {
+        List<File> files = new ArrayList<>();
+        for (List<File> group : groups) files.addAll(group);
+        List<Future<String>> hashes = new ArrayList<>(files.size());
+        AtomicLong processed = new AtomicLong();
+        for (File file : files) {
+            hashes.add(pool.submit((Callable<String>) () -> {
+                if (cancelled) return null;
+                try {
+                    return hasher.hash(file);
+                } catch (IOException e) {
+                    return null;
+                } finally {
+                    long done = processed.incrementAndGet();
+                    if (listener != null) {
+                        listener.progress(stage, (int) done, files.size());
+                    }
+                }
+            }));
+        }
+
+        List<List<File>> result = new ArrayList<>();
+        int k = 0;
+        for (List<File> group : groups) {
+            Map<String, List<File>> byHash = new HashMap<>();
+            for (File file : group) {
+                String hash;
+                try {
+                    hash = hashes.get(k++).get();
+                } catch (ExecutionException e) {
+                    hash = null;
+                }
+                if (hash != null) {
+                    byHash.computeIfAbsent(hash, h -> new ArrayList<>()).add(file);
+                }
+            }
+            for (List<File> same : byHash.values()) {
+                if (same.size() > 1) result.add(same);
+            }
+        }
+        return result;
+    }
+
+    // 开头和结尾各64KB；不超过128KB的文件这一步就读完了全文，结果带上"full:"前缀
+    private String edgeHash(File file) throws IOException {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = edgeBuffer.get();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            readInto(channel, buffer, 0, digest);
+            if (size > EDGE_SIZE) {
+                readInto(channel, buffer, Math.max(EDGE_SIZE, size - EDGE_SIZE), digest);
+            }
+            return (size <= 2L * EDGE_SIZE ? "full:" : "edge:") + toHex(digest.digest());
+        }
+    }
+
+    private void readInto(FileChannel channel, ByteBuffer buffer, long position, MessageDigest digest) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) break;
+        }
+        buffer.flip();
+        bytesRead.addAndGet(buffer.remaining());
+        digest.update(buffer);
+    }
+
+    private String fullHash(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= 2L * EDGE_SIZE) {
+                // 第二步已经比较过全文
+                return "small";
+            }
+            MessageDigest digest = newDigest();
+            ByteBuffer buffer = readBuffer.get();
+            for (long position = 0; position < size && !cancelled; ) {
+                buffer.clear();
+                int n = channel.read(buffer, position);
+                if (n < 0) break;
+                buffer.flip();
+                bytesRead.addAndGet(n);
+                digest.update(buffer);
+                position += n;
+            }
+            return toHex(digest.digest());
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,243 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * JPEG文件头解析：只读取SOF之前的标记段，不解码像素。
+ * 提取图像尺寸、EXIF拍摄时间和方向以及EXIF(APP1)/JFIF(APP0)中内嵌的预览图。
+ */
+public class ExifReader {
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_EOI = 0xD9;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_APP0 = 0xE0;
+    private static final int MARKER_APP1 = 0xE1;
+
+    private static final int TAG_JPEG_INTERCHANGE_FORMAT = 0x0201;
+    private static final int TAG_JPEG_INTERCHANGE_FORMAT_LENGTH = 0x0202;
+    private static final int TAG_ORIENTATION = 0x0112;
+    private static final int TAG_DATE_TIME = 0x0132;
+    private static final int TAG_EXIF_IFD = 0x8769;
+    private static final int TAG_DATE_TIME_ORIGINAL = 0x9003;
+    private static final int TYPE_ASCII = 2;
+    private static final int TYPE_SHORT = 3;
+    private static final java.time.format.DateTimeFormatter EXIF_DATE =
+        java.time.format.DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+
+    private ExifReader() {}
+
+    public static class JpegHeader {
+        /** 主图尺寸，未找到SOF时为0 */
+        public int width;
+        public int height;
+        /** EXIF IFD1中的JPEG预览图数据 */
+        public byte[] exifThumbnail;
+        /** JFIF APP0中的预览图：JPEG数据或未压缩RGB */
+        public byte[] jfifThumbnail;
+        public int jfifThumbWidth;
+        public int jfifThumbHeight;
+        public boolean jfifThumbnailIsJpeg;
+        /** 拍摄时间（本地时间转换的毫秒数），优先DateTimeOriginal，没有时为0 */
+        public long captureTime;
+        /** EXIF方向1~8，1为正常；像素按存储方向保存，显示时需要按此旋转/翻转 */
+        public int orientation = 1;
+    }
+
+    public static boolean isJpeg(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".jpg") || name.endsWith(".jpeg");
+    }
+
+    /**
+     * 读取JPEG文件头，不是JPEG文件时返回null。
+     */
+    public static JpegHeader read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), 8192))) {
+            if (in.readUnsignedByte() != 0xFF || in.readUnsignedByte() != MARKER_SOI) {
+                return null;
+            }
+            JpegHeader header = new JpegHeader();
+            while (true) {
+                int marker = nextMarker(in);
+                if (marker == MARKER_SOS || marker == MARKER_EOI) break;
+                // 无负载的独立标记
+                if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) continue;
+
+                int length = in.readUnsignedShort() - 2;
+                if (length < 0) break;
+                if (isStartOfFrame(marker)) {
+                    in.readUnsignedByte(); // 采样精度
+                    header.height = in.readUnsignedShort();
+                    header.width = in.readUnsignedShort();
+                    // 预览图都在SOF之前的APP段中，读到SOF即可停止
+                    break;
+                } else if (marker == MARKER_APP1 || marker == MARKER_APP0) {
+                    byte[] segment = new byte[length];
+                    in.readFully(segment);
+                    if (marker == MARKER_APP1) {
+                        parseExif(segment, header);
+                    } else {
+                        parseJfif(segment, header);
+                    }
+                } else {
+                    skipFully(in, length);
+                }
+            }
+            return header;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static int nextMarker(DataInputStream in) throws IOException {
+        int b = in.readUnsignedByte();
+        while (b != 0xFF) {
+            b = in.readUnsignedByte();
+        }
+        // 跳过填充字节
+        while (b == 0xFF) {
+            b = in.readUnsignedByte();
+        }
+        return b;
+    }
+
+    private static boolean isStartOfFrame(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF
+            && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        int remaining = length;
+        while (remaining > 0) {
+            int skipped = in.skipBytes(remaining);
+            if (skipped <= 0) throw new EOFException();
+            remaining -= skipped;
+        }
+    }
+
+    private static boolean startsWith(byte[] data, String prefix) {
+        byte[] p = prefix.getBytes(StandardCharsets.ISO_8859_1);
+        if (data.length < p.length) return false;
+        for (int i = 0; i < p.length; i++) {
+            if (data[i] != p[i]) return false;
+        }
+        return true;
+    }
+
+    // APP1: "Exif\0\0" + TIFF结构，预览图位置记录在IFD1中
+    private static void parseExif(byte[] segment, JpegHeader header) {
+        if (!startsWith(segment, "Exif\0\0")) return;
+        ByteBuffer tiff = ByteBuffer.wrap(segment, 6, segment.length - 6).slice();
+        if (tiff.remaining() < 8) return;
+        if (tiff.get(0) == 'I' && tiff.get(1) == 'I') {
+            tiff.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (tiff.get(0) == 'M' && tiff.get(1) == 'M') {
+            tiff.order(ByteOrder.BIG_ENDIAN);
+        } else {
+            return;
+        }
+        if ((tiff.getShort(2) & 0xFFFF) != 42) return;
+
+        int ifd0 = tiff.getInt(4);
+        parseIfd0(tiff, ifd0, header);
+        int ifd1 = nextIfdOffset(tiff, ifd0);
+        if (ifd1 <= 0) return;
+
+        int offset = -1;
+        int length = -1;
+        int count = entryCount(tiff, ifd1);
+        for (int i = 0; i < count; i++) {
+            int entry = ifd1 + 2 + i * 12;
+            int tag = tiff.getShort(entry) & 0xFFFF;
+            if (tag == TAG_JPEG_INTERCHANGE_FORMAT) {
+                offset = tiff.getInt(entry + 8);
+            } else if (tag == TAG_JPEG_INTERCHANGE_FORMAT_LENGTH) {
+                length = tiff.getInt(entry + 8);
+            }
+        }
+        if (offset > 0 && length > 0 && (long) offset + length <= tiff.capacity()) {
+            byte[] thumbnail = new byte[length];
+            tiff.get(offset, thumbnail);
+            header.exifThumbnail = thumbnail;
+        }
+    }
+
+    // IFD0中的方向；DateTime是修改时间，Exif子IFD中的DateTimeOriginal才是拍摄时间
+    private static void parseIfd0(ByteBuffer tiff, int ifd0, JpegHeader header) {
+        int count = entryCount(tiff, ifd0);
+        int exifIfd = -1;
+        for (int i = 0; i < count; i++) {
+            int entry = ifd0 + 2 + i * 12;
+            int tag = tiff.getShort(entry) & 0xFFFF;
+            if (tag == TAG_EXIF_IFD) {
+                exifIfd = tiff.getInt(entry + 8);
+            } else if (tag == TAG_DATE_TIME && header.captureTime == 0) {
+                header.captureTime = readDate(tiff, entry);
+            } else if (tag == TAG_ORIENTATION && (tiff.getShort(entry + 2) & 0xFFFF) == TYPE_SHORT) {
+                // 单个SHORT值直接存放在值字段的前两个字节
+                int orientation = tiff.getShort(entry + 8) & 0xFFFF;
+                if (orientation >= 1 && orientation <= 8) header.orientation = orientation;
+            }
+        }
+        count = entryCount(tiff, exifIfd);
+        for (int i = 0; i < count; i++) {
+            int entry = exifIfd + 2 + i * 12;
+            if ((tiff.getShort(entry) & 0xFFFF) == TAG_DATE_TIME_ORIGINAL) {
+                long original = readDate(tiff, entry);
+                if (original != 0) header.captureTime = original;
+            }
+        }
+    }
+
+    // "yyyy:MM:dd HH:mm:ss\0"，共20字节，存放在偏移处；无效日期返回0
+    private static long readDate(ByteBuffer tiff, int entry) {
+        if ((tiff.getShort(entry + 2) & 0xFFFF) != TYPE_ASCII || tiff.getInt(entry + 4) < 19) return 0;
+        int offset = tiff.getInt(entry + 8);
+        if (offset < 0 || offset + 19 > tiff.capacity()) return 0;
+        byte[] text = new byte[19];
+        tiff.get(offset, text);
+        try {
+            return java.time.LocalDateTime.parse(new String(text, StandardCharsets.ISO_8859_1), EXIF_DATE)
+                .atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (java.time.format.DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    // 越界的IFD按损坏处理，返回-1
+    private static int entryCount(ByteBuffer tiff, int ifd) {
+        if (ifd < 8 || ifd + 2 > tiff.capacity()) return -1;
+        int count = tiff.getShort(ifd) & 0xFFFF;
+        return ifd + 2 + count * 12 + 4 <= tiff.capacity() ? count : -1;
+    }
+
+    private static int nextIfdOffset(ByteBuffer tiff, int ifd) {
+        int count = entryCount(tiff, ifd);
+        if (count < 0) return -1;
+        return tiff.getInt(ifd + 2 + count * 12);
+    }
+
+    // APP0: JFIF自带未压缩RGB预览，或JFXX扩展段中的JPEG预览
+    private static void parseJfif(byte[] segment, JpegHeader header) {
+        if (startsWith(segment, "JFIF\0") && segment.length >= 14) {
+            int w = segment[12] & 0xFF;
+            int h = segment[13] & 0xFF;
+            if (w > 0 && h > 0 && segment.length >= 14 + 3 * w * h) {
+                header.jfifThumbWidth = w;
+                header.jfifThumbHeight = h;
+                header.jfifThumbnail = java.util.Arrays.copyOfRange(segment, 14, 14 + 3 * w * h);
+                header.jfifThumbnailIsJpeg = false;
+            }
+        } else if (startsWith(segment, "JFXX\0") && segment.length > 6 && segment[5] == 0x10) {
+            header.jfifThumbnail = java.util.Arrays.copyOfRange(segment, 6, segment.length);
+            header.jfifThumbnailIsJpeg = true;
+        }
+    }
+}
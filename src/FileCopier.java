@@ -0,0 +1,292 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 并行复制或移动一批文件到目标目录。
+ * <p>
+ * 每个文件先用FileChannel.transferTo写入同目录下的临时文件（.part），完成后再改名为最终名字，
+ * 目录中不会出现写了一半的图片。最终名字在复制前预留，多个线程或多次粘贴同时进行也不会重名。
+ * 取消时删除本次已经复制的所有文件和临时文件。所有文件处理完后整批提交，提交之后取消不再生效。
+ * <p>
+ * 移动时先尝试ATOMIC_MOVE，同一卷上只是改名，不读写文件内容；跨卷时退回到复制，
+ * 整批完成后才删除源文件，取消时已改名的文件移回原处、已复制的副本删除，源文件保持不变。
+ */
+public class FileCopier {
+    private static final int THREADS = Integer.getInteger("photomanager.copyThreads", 4);
+    // 每次transferTo的最大字节数，复制大文件时也能及时响应取消和更新进度
+    private static final long CHUNK_SIZE = 8L * 1024 * 1024;
+    private static final String TEMP_SUFFIX = ".part";
+
+    // 已预留但还没有落盘的目标文件，所有复制任务共享
+    private static final Set<File> reserved = new HashSet<>();
+
+    public interface Listener {
+        /**
+         * 在复制线程中回调，调用方需要自行切换到EDT。
+         */
+        void progress(long copiedBytes, long totalBytes, int finishedFiles, int totalFiles);
+    }
+
+    private final List<File> sources;
+    private final File destDir;
+    private final boolean move;
+    private final Listener listener;
+    private final long totalBytes;
+    private final AtomicLong copiedBytes = new AtomicLong();
+    private final AtomicInteger finishedFiles = new AtomicInteger();
+    private final List<File> completed = Collections.synchronizedList(new ArrayList<>());
+    // 与completed一一对应的源文件；移动时用于回滚和删除源文件
+    private final List<File> completedSources = new ArrayList<>();
+    private final Set<File> renamed = Collections.synchronizedSet(new HashSet<>());
+    private final List<IOException> failures = Collections.synchronizedList(new ArrayList<>());
+    private volatile boolean cancelled;
+    // 以下两个状态由this保护：提交后cancel()不再生效；rolledBack表示本次确实回滚了
+    private boolean committed;
+    private boolean rolledBack;
+
+    public FileCopier(List<File> sources, File destDir, Listener listener) {
+        this(sources, destDir, false, listener);
+    }
+
+    public FileCopier(List<File> sources, File destDir, boolean move, Listener listener) {
+        this.sources = new ArrayList<>(sources);
+        this.destDir = destDir;
+        this.move = move;
+        this.listener = listener;
+        long total = 0;
+        for (File file : sources) {
+            total += file.length();
+        }
+        this.totalBytes = total;
+    }
+
+    /**
+     * 阻塞执行复制或移动，返回成功的目标文件。单个文件失败不影响其他文件，
+     * 失败原因可以通过{@link #getFailures()}取得；提交前取消时回滚全部文件并返回空列表，
+     * 是否回滚以{@link #isRolledBack()}为准。
+     */
+    public List<File> run() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(THREADS, sources.size())), r -> {
+            Thread t = new Thread(r, "file-copier");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (File source : sources) {
+                futures.add(pool.submit(() -> copyOne(source)));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    e.printStackTrace();
+                }
+            }
+        } catch (InterruptedException e) {
+            cancel();
+            throw e;
+        } finally {
+            pool.shutdown();
+            if (!commit()) {
+                // 等正在写的线程退出后再回滚，避免删除后又被写出
+                pool.awaitTermination(1, TimeUnit.MINUTES);
+                rollback();
+                synchronized (this) {
+                    rolledBack = true;
+                }
+            }
+        }
+        if (isRolledBack()) return List.of();
+        if (move) {
+            deleteCopiedSources();
+        }
+        return new ArrayList<>(completed);
+    }
+
+    /**
+     * 请求取消。整批已经提交（文件已经到位，移动时源文件即将删除）后调用没有效果。
+     */
+    public synchronized void cancel() {
+        if (!committed) {
+            cancelled = true;
+        }
+    }
+
+    // 没有被取消时提交，之后cancel()不再生效
+    private synchronized boolean commit() {
+        if (!cancelled) {
+            committed = true;
+        }
+        return committed;
+    }
+
+    /**
+     * 本次是否因取消而回滚，run()返回后有效。
+     */
+    public synchronized boolean isRolledBack() {
+        return rolledBack;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public List<IOException> getFailures() {
+        return failures;
+    }
+
+    private void copyOne(File source) {
+        if (cancelled) return;
+        if (move && destDir.equals(source.getParentFile())) {
+            // 移动到原目录，什么也不用做
+            report(source.length(), 1);
+            return;
+        }
+        File dest = reserveName(destDir, source.getName());
+        if (move && rename(source, dest)) {
+            return;
+        }
+        File temp = new File(destDir, "." + dest.getName() + TEMP_SUFFIX);
+        long expected = source.length();
+        long written = 0;
+        boolean done = false;
+        try {
+            try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long size = in.size();
+                while (written < size) {
+                    if (cancelled) return;
+                    // transferTo在支持的平台上直接在内核中复制，不经过Java堆
+                    long n = in.transferTo(written, Math.min(CHUNK_SIZE, size - written), out);
+                    if (n <= 0) throw new IOException("复制中断: " + source);
+                    written += n;
+                    report(n, 0);
+                }
+            }
+            Files.setLastModifiedTime(temp.toPath(), Files.getLastModifiedTime(source.toPath()));
+            // 不带REPLACE_EXISTING：预留之后被其他程序抢先创建的同名文件不会被覆盖
+            Files.move(temp.toPath(), dest.toPath());
+            addCompleted(source, dest);
+            done = true;
+        } catch (IOException e) {
+            failures.add(e);
+        } finally {
+            temp.delete();
+            release(dest);
+            // 失败的文件按跳过计入进度，总进度仍能走到100%
+            report(done || cancelled ? 0 : Math.max(0, expected - written), 1);
+        }
+    }
+
+    /**
+     * 同一卷上直接改名。名字已经预留且不存在，ATOMIC_MOVE不会覆盖别的文件；
+     * 跨卷时抛出AtomicMoveNotSupportedException，返回false由调用方复制。
+     */
+    private boolean rename(File source, File dest) {
+        try {
+            Files.move(source.toPath(), dest.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            renamed.add(dest);
+            addCompleted(source, dest);
+            report(source.length(), 1);
+            release(dest);
+            return true;
+        } catch (AtomicMoveNotSupportedException e) {
+            return false;
+        } catch (IOException e) {
+            failures.add(e);
+            release(dest);
+            report(source.length(), 1);
+            return true;
+        }
+    }
+
+    private void addCompleted(File source, File dest) {
+        synchronized (completed) {
+            completed.add(dest);
+            completedSources.add(source);
+        }
+    }
+
+    // 跨卷移动的文件复制完成后删除源文件
+    private void deleteCopiedSources() {
+        synchronized (completed) {
+            for (int i = 0; i < completed.size(); i++) {
+                File dest = completed.get(i);
+                if (!renamed.contains(dest) && !completedSources.get(i).delete()) {
+                    failures.add(new IOException("无法删除源文件: " + completedSources.get(i)));
+                }
+            }
+        }
+    }
+
+    private void report(long bytes, int files) {
+        long done = copiedBytes.addAndGet(bytes);
+        int count = finishedFiles.addAndGet(files);
+        if (listener != null) {
+            listener.progress(done, totalBytes, count, sources.size());
+        }
+    }
+
+    private void rollback() {
+        synchronized (completed) {
+            for (int i = 0; i < completed.size(); i++) {
+                File file = completed.get(i);
+                if (renamed.contains(file)) {
+                    // 已改名的文件移回原处，这里没有副本可以删除
+                    try {
+                        Files.move(file.toPath(), completedSources.get(i).toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                } else {
+                    file.delete();
+                }
+            }
+            completed.clear();
+            completedSources.clear();
+        }
+    }
+
+    /**
+     * 在目录中选一个不存在且未被预留的名字，重名时追加" (n)"。用完后必须调用{@link #release(File)}。
+     */
+    public static File reserveName(File dir, String originalName) {
+        int dot = originalName.lastIndexOf('.');
+        String baseName = dot > 0 ? originalName.substring(0, dot) : originalName;
+        String extension = dot > 0 ? originalName.substring(dot) : "";
+        synchronized (reserved) {
+            File candidate = new File(dir, originalName);
+            int counter = 1;
+            while (candidate.exists() || reserved.contains(candidate)) {
+                candidate = new File(dir, baseName + " (" + counter + ")" + extension);
+                counter++;
+            }
+            reserved.add(candidate);
+            return candidate;
+        }
+    }
+
+    public static void release(File file) {
+        synchronized (reserved) {
+            reserved.remove(file);
+        }
+    }
+}
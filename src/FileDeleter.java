@@ -0,0 +1,283 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 在后台线程中删除一批文件。
+ * <p>
+ * 暂存模式下文件不直接删除，而是改名移入所在目录下的{@link #STAGING_DIR}（同一卷上只改名，很快），
+ * 之后可以{@link #undo(Map)}移回原处，或者{@link #purge()}真正删除。
+ * 每个文件的失败单独记录，不影响其余文件。
+ * <p>
+ * 批次目录名以所属进程的pid开头。{@link #sweep(File)}清理暂存目录时跳过本进程还能撤销的批次
+ * 和其他仍在运行的实例的批次；退出时未删除的批次记入{@link #PENDING_FILE}，下次启动时在后台删除。
+ */
+public class FileDeleter {
+    /** 暂存目录名，目录树中不显示 */
+    public static final String STAGING_DIR = ".photomanager-deleted";
+    // 配置目录中记录待删除批次目录的文件，每行一个路径
+    private static final String PENDING_FILE = "pending-purge.txt";
+    // 仍可撤销（尚未purge或undo）的批次名
+    private static final Set<String> liveBatches = ConcurrentHashMap.newKeySet();
+    private static final long PID = ProcessHandle.current().pid();
+    private static final AtomicInteger batchCounter = new AtomicInteger();
+    // 超过这个时间的批次无论属于谁都清理，防止进程号被重用后遗留的批次永远留着
+    private static final long STAGING_MAX_AGE = TimeUnit.DAYS.toMillis(Long.getLong("photomanager.stagingMaxAgeDays", 7));
+
+    public interface Listener {
+        /**
+         * 在删除线程中回调，调用方需要自行切换到EDT。
+         */
+        void progress(int finished, int total);
+    }
+
+    private final List<File> files;
+    private final boolean staged;
+    private final Listener listener;
+    // 每批使用独立的子目录，多次删除同名文件互不覆盖；"pid-时间-序号"，多个实例之间也不重名
+    private final String batch;
+    private final Map<File, IOException> failures = new LinkedHashMap<>();
+    // 原文件 -> 暂存位置
+    private final Map<File, File> stagedFiles = new LinkedHashMap<>();
+    private volatile boolean cancelled;
+
+    public FileDeleter(List<File> files, boolean staged, Listener listener) {
+        this.files = new ArrayList<>(files);
+        this.staged = staged;
+        this.listener = listener;
+        this.batch = PID + "-" + System.currentTimeMillis() + "-" + batchCounter.incrementAndGet();
+        if (staged) {
+            liveBatches.add(batch);
+        }
+    }
+
+    /**
+     * 阻塞执行删除，返回已经删除（或移入暂存目录）的原文件。取消后剩余文件保持不变。
+     */
+    public List<File> run() {
+        List<File> deleted = new ArrayList<>();
+        for (int i = 0; i < files.size() && !cancelled; i++) {
+            File file = files.get(i);
+            try {
+                if (staged) {
+                    File stagingDir = new File(new File(file.getParentFile(), STAGING_DIR), batch);
+                    Files.createDirectories(stagingDir.toPath());
+                    File target = new File(stagingDir, file.getName());
+                    Files.move(file.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    synchronized (stagedFiles) {
+                        stagedFiles.put(file, target);
+                    }
+                } else {
+                    Files.delete(file.toPath());
+                }
+                deleted.add(file);
+            } catch (IOException e) {
+                failures.put(file, e);
+            }
+            if (listener != null) {
+                listener.progress(i + 1, files.size());
+            }
+        }
+        return deleted;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isStaged() {
+        return staged;
+    }
+
+    public Map<File, IOException> getFailures() {
+        return failures;
+    }
+
+    /**
+     * 把暂存的文件移回原目录，原名已被占用时改用" (n)"后缀。返回恢复后的文件，
+     * 无法恢复的暂存文件和原因放入undoFailures。有文件没能恢复时本批仍然登记为可撤销，本次运行期间不会被清理。
+     */
+    public List<File> undo(Map<File, IOException> undoFailures) {
+        List<File> restored = new ArrayList<>();
+        boolean complete = true;
+        synchronized (stagedFiles) {
+            for (Map.Entry<File, File> entry : stagedFiles.entrySet()) {
+                File original = entry.getKey();
+                File target = FileCopier.reserveName(original.getParentFile(), original.getName());
+                try {
+                    Files.move(entry.getValue().toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    restored.add(target);
+                } catch (IOException e) {
+                    undoFailures.put(entry.getValue(), e);
+                    complete = false;
+                } finally {
+                    FileCopier.release(target);
+                }
+            }
+            removeStagingDirs();
+            stagedFiles.clear();
+        }
+        if (complete) {
+            liveBatches.remove(batch);
+        }
+        return restored;
+    }
+
+    /**
+     * 真正删除暂存的文件，之后不能再撤销。返回删除失败的暂存文件和原因。
+     */
+    public Map<File, IOException> purge() {
+        Map<File, IOException> purgeFailures = new LinkedHashMap<>();
+        synchronized (stagedFiles) {
+            for (File file : stagedFiles.values()) {
+                try {
+                    Files.deleteIfExists(file.toPath());
+                } catch (IOException e) {
+                    purgeFailures.put(file, e);
+                }
+            }
+            removeStagingDirs();
+            stagedFiles.clear();
+        }
+        liveBatches.remove(batch);
+        return purgeFailures;
+    }
+
+    /**
+     * 本批可能用到的暂存子目录（每个原文件所在目录各一个），不访问磁盘。
+     */
+    public Set<File> getStagingDirs() {
+        Set<File> dirs = new LinkedHashSet<>();
+        if (!staged) return dirs;
+        for (File file : files) {
+            dirs.add(new File(new File(file.getParentFile(), STAGING_DIR), batch));
+        }
+        return dirs;
+    }
+
+    // 删除本批的子目录；暂存目录为空时一并删除
+    private void removeStagingDirs() {
+        for (File file : stagedFiles.values()) {
+            File batchDir = file.getParentFile();
+            if (batchDir.delete()) {
+                batchDir.getParentFile().delete();
+            }
+        }
+    }
+
+    /**
+     * 删除dir下暂存目录中已不能撤销的批次（上次异常退出等遗留的），在后台线程中调用。
+     * 其他仍在运行的实例的批次保留，直到超过{@link #STAGING_MAX_AGE}。
+     */
+    public static void sweep(File dir) {
+        File stagingRoot = new File(dir, STAGING_DIR);
+        File[] batches = stagingRoot.listFiles(File::isDirectory);
+        if (batches == null) return;
+        for (File batchDir : batches) {
+            if (isAbandoned(batchDir)) {
+                deleteBatchDir(batchDir);
+            }
+        }
+        stagingRoot.delete();
+    }
+
+    private static boolean isAbandoned(File batchDir) {
+        String name = batchDir.getName();
+        // 批次在创建子目录之前就已登记，这里检查通过说明它已结束
+        if (liveBatches.contains(name)) return false;
+        if (System.currentTimeMillis() - batchDir.lastModified() > STAGING_MAX_AGE) return true;
+        int dash = name.indexOf('-');
+        if (dash <= 0) {
+            // 旧版本的批次名只有时间，无法判断所属进程，等超时
+            return false;
+        }
+        long owner;
+        try {
+            owner = Long.parseLong(name.substring(0, dash));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (owner == PID) return true;
+        return ProcessHandle.of(owner).map(p -> !p.isAlive()).orElse(true);
+    }
+
+    /**
+     * 退出时调用：记下这些批次目录，下次启动时由{@link #purgePending()}删除。只写一个小文件，不删除任何文件。
+     */
+    public static synchronized void savePending(Collection<File> batchDirs) {
+        if (batchDirs.isEmpty()) return;
+        File dir = AppDirs.configDir();
+        if (!dir.isDirectory() && !dir.mkdirs()) return;
+        List<String> lines = new ArrayList<>();
+        for (File batchDir : batchDirs) {
+            lines.add(batchDir.getAbsolutePath());
+        }
+        try {
+            Files.write(new File(dir, PENDING_FILE).toPath(), lines, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 删除上次退出时记下的批次目录，在后台线程中调用。
+     */
+    public static void purgePending() {
+        List<String> lines;
+        synchronized (FileDeleter.class) {
+            File file = new File(AppDirs.configDir(), PENDING_FILE);
+            if (!file.isFile()) return;
+            try {
+                lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+                Files.delete(file.toPath());
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+        }
+        for (String line : lines) {
+            File batchDir = new File(line);
+            // 只处理暂存目录下的批次，防止记录文件被改动后误删其他目录
+            File stagingRoot = batchDir.getParentFile();
+            if (line.isEmpty() || stagingRoot == null || !STAGING_DIR.equals(stagingRoot.getName())) continue;
+            deleteBatchDir(batchDir);
+            stagingRoot.delete();
+        }
+    }
+
+    // 批次目录中只有直接移入的文件，没有子目录
+    private static void deleteBatchDir(File batchDir) {
+        File[] staged = batchDir.listFiles();
+        if (staged != null) {
+            for (File file : staged) {
+                try {
+                    Files.delete(file.toPath());
+                } catch (NoSuchFileException e) {
+                    // 已被删除
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        batchDir.delete();
+    }
+}
@@ -0,0 +1,100 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * 64位哈希的多索引哈希表，用于查找汉明距离不超过阈值的所有项。
+ * <p>
+ * 哈希切成4段16位，每段按取值分桶。两个哈希总距离不超过d时，至少有一段的距离不超过d/4（抽屉原理），
+ * 所以查询时每段只需探查距离不超过d/4的那些桶，再逐个核对完整距离。
+ * 相似阈值为10位时，BK树在64位哈希上几乎要访问所有节点，而这里每次查询只看几百个桶。
+ */
+public class HammingIndex {
+    private static final int CHUNKS = 4;
+    private static final int CHUNK_BITS = 16;
+    private static final int BUCKETS = 1 << CHUNK_BITS;
+
+    private final long[] hashes;
+    private final int[] ids;
+    // 第c段取值为v的项是entries[c][start[c][v], start[c][v + 1])
+    private final int[][] start = new int[CHUNKS][];
+    private final int[][] entries = new int[CHUNKS][];
+    private int[] probeMasks = new int[0];
+    private int probeRadius = -1;
+
+    /**
+     * 一次性建立索引，ids[i]是hashes[i]查询命中时回调的值。
+     */
+    public HammingIndex(long[] hashes, int[] ids) {
+        this.hashes = hashes;
+        this.ids = ids;
+        for (int c = 0; c < CHUNKS; c++) {
+            // 计数排序建桶
+            int[] counts = new int[BUCKETS + 1];
+            for (long hash : hashes) {
+                counts[chunk(hash, c) + 1]++;
+            }
+            for (int v = 0; v < BUCKETS; v++) {
+                counts[v + 1] += counts[v];
+            }
+            int[] fill = java.util.Arrays.copyOf(counts, BUCKETS);
+            int[] sorted = new int[hashes.length];
+            for (int i = 0; i < hashes.length; i++) {
+                sorted[fill[chunk(hashes[i], c)]++] = i;
+            }
+            start[c] = counts;
+            entries[c] = sorted;
+        }
+    }
+
+    public int size() {
+        return hashes.length;
+    }
+
+    /**
+     * 对距离不超过maxDistance的每一项回调其id，每项只回调一次。不是线程安全的。
+     */
+    public void query(long hash, int maxDistance, IntConsumer consumer) {
+        int radius = maxDistance / CHUNKS;
+        int[] masks = probeMasks(radius);
+        for (int c = 0; c < CHUNKS; c++) {
+            int value = chunk(hash, c);
+            for (int mask : masks) {
+                int bucket = value ^ mask;
+                for (int k = start[c][bucket]; k < start[c][bucket + 1]; k++) {
+                    int i = entries[c][k];
+                    long other = hashes[i];
+                    // 前面的段已经命中过的项跳过，保证不重复
+                    if (matchedEarlier(hash, other, c, radius)) continue;
+                    if (Long.bitCount(hash ^ other) <= maxDistance) {
+                        consumer.accept(ids[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean matchedEarlier(long a, long b, int chunk, int radius) {
+        for (int c = 0; c < chunk; c++) {
+            if (Integer.bitCount(chunk(a, c) ^ chunk(b, c)) <= radius) return true;
+        }
+        return false;
+    }
+
+    private static int chunk(long hash, int c) {
+        return (int) (hash >>> (c * CHUNK_BITS)) & (BUCKETS - 1);
+    }
+
+    // 所有置位数不超过radius的16位掩码
+    private int[] probeMasks(int radius) {
+        if (radius != probeRadius) {
+            List<Integer> masks = new ArrayList<>();
+            for (int mask = 0; mask < BUCKETS; mask++) {
+                if (Integer.bitCount(mask) <= radius) masks.add(mask);
+            }
+            probeMasks = masks.stream().mapToInt(Integer::intValue).toArray();
+            probeRadius = radius;
+        }
+        return probeMasks;
+    }
+}
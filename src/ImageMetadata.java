@@ -0,0 +1,37 @@
+/**
+ * 只从文件头读出的图片信息。宽高是文件中存储的像素尺寸，显示尺寸要考虑EXIF方向。
+ */
+public final class ImageMetadata {
+    public static final ImageMetadata UNKNOWN = new ImageMetadata(0, 0, 0, 1);
+
+    private final int width;
+    private final int height;
+    private final long captureTime;
+    private final int orientation;
+
+    public ImageMetadata(int width, int height, long captureTime, int orientation) {
+        this.width = width;
+        this.height = height;
+        this.captureTime = captureTime;
+        this.orientation = orientation;
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    /** 拍摄时间毫秒数，未知时为0 */
+    public long getCaptureTime() { return captureTime; }
+    public int getOrientation() { return orientation; }
+
+    /** 方向5~8需要旋转90度，宽高互换 */
+    public boolean isTransposed() {
+        return orientation >= 5;
+    }
+
+    public int getDisplayWidth() {
+        return isTransposed() ? height : width;
+    }
+
+    public int getDisplayHeight() {
+        return isTransposed() ? width : height;
+    }
+}
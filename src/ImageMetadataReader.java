@@ -0,0 +1,101 @@
+import java.awt.Dimension;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 只读文件头取得图片尺寸、拍摄时间和方向，不解码像素。
+ * <p>
+ * JPEG直接解析标记段（{@link ExifReader}），其他格式用ImageReader.getWidth/getHeight。
+ * 每个文件只读几KB，结果按路径、大小和修改时间缓存；批量读取在共享线程池中并行进行。
+ */
+public class ImageMetadataReader {
+    private static final int THREADS = Integer.getInteger("photomanager.metadataThreads",
+        Runtime.getRuntime().availableProcessors());
+    // 缓存条目很小，超过上限时整体清空即可
+    private static final int CACHE_LIMIT = Integer.getInteger("photomanager.metadataCacheSize", 200000);
+    private static final Map<ThumbnailKey, ImageMetadata> cache = new ConcurrentHashMap<>();
+    private static final ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, THREADS), r -> {
+        Thread t = new Thread(r, "metadata-reader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private ImageMetadataReader() {}
+
+    /**
+     * 读取单个文件，优先使用缓存。无法识别时返回{@link ImageMetadata#UNKNOWN}。
+     */
+    public static ImageMetadata read(File file) {
+        ThumbnailKey key;
+        try {
+            key = ThumbnailKey.of(file);
+        } catch (IOException e) {
+            return ImageMetadata.UNKNOWN;
+        }
+        ImageMetadata cached = cache.get(key);
+        if (cached != null) return cached;
+        ImageMetadata metadata = readHeader(file);
+        if (cache.size() >= CACHE_LIMIT) {
+            cache.clear();
+        }
+        cache.put(key, metadata);
+        return metadata;
+    }
+
+    /**
+     * 不经过缓存直接读文件头，供建立图片库索引这类一次性的批量扫描使用。
+     */
+    public static ImageMetadata readHeader(File file) {
+        try {
+            if (ExifReader.isJpeg(file)) {
+                ExifReader.JpegHeader header = ExifReader.read(file);
+                if (header != null) {
+                    return new ImageMetadata(header.width, header.height, header.captureTime, header.orientation);
+                }
+            }
+            Dimension size = ThumbnailDecoder.readSize(file);
+            if (size != null) {
+                return new ImageMetadata(size.width, size.height, 0, 1);
+            }
+        } catch (IOException | RuntimeException e) {
+            // 损坏的图片按未知处理
+        }
+        return ImageMetadata.UNKNOWN;
+    }
+
+    /**
+     * 并行读取一批文件，结果与输入一一对应。cancelled返回true后尚未开始的文件结果为null。
+     */
+    public static ImageMetadata[] readAll(List<File> files, BooleanSupplier cancelled) throws InterruptedException {
+        ImageMetadata[] result = new ImageMetadata[files.size()];
+        // 分块提交，任务数与线程数相当，避免为每个文件创建任务
+        int chunk = Math.max(64, files.size() / (THREADS * 4) + 1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int start = 0; start < files.size(); start += chunk) {
+            int from = start;
+            int to = Math.min(files.size(), start + chunk);
+            futures.add(pool.submit(() -> {
+                for (int i = from; i < to && !cancelled.getAsBoolean(); i++) {
+                    result[i] = read(files.get(i));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+        return result;
+    }
+}
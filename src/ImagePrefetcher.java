@@ -0,0 +1,187 @@
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 幻灯片预读：在后台把当前图片前后若干张解码成适合屏幕的尺寸，放进固定大小的环形缓冲。
+ * <p>
+ * 缓冲窗口跟随浏览方向，向前翻时多预读后面的，向后翻时多预读前面的；
+ * 槽位按 index % 容量 复用，窗口移动后旧图片自然被覆盖。
+ * 解码完成的回调在EDT上执行。
+ */
+public class ImagePrefetcher {
+    private static final int POOL_SIZE = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors()));
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final List<File> files;
+    private final int maxWidth;
+    private final int maxHeight;
+    private final int ahead;
+    private final int behind;
+    private final Slot[] ring;
+    private final Listener listener;
+    private final ExecutorService executor = Executors.newFixedThreadPool(POOL_SIZE, r -> {
+        Thread t = new Thread(r, "slideshow-prefetch-" + THREAD_COUNTER.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private int current = -1;
+    private int direction = 1;
+    private int activeWorkers = 0;
+    private volatile boolean closed = false;
+
+    public interface Listener {
+        /** 在EDT上回调，image为null表示解码失败 */
+        void imageReady(int index, BufferedImage image);
+    }
+
+    private static class Slot {
+        int index = -1;
+        boolean started;
+        boolean done;
+        BufferedImage image;
+    }
+
+    /**
+     * @param ahead  沿浏览方向预读的张数
+     * @param behind 反方向保留的张数
+     */
+    public ImagePrefetcher(List<File> files, int maxWidth, int maxHeight, int ahead, int behind, Listener listener) {
+        this.files = files;
+        this.maxWidth = Math.max(1, maxWidth);
+        this.maxHeight = Math.max(1, maxHeight);
+        this.ahead = Math.max(0, ahead);
+        this.behind = Math.max(0, behind);
+        this.listener = listener;
+        this.ring = new Slot[this.ahead + this.behind + 1];
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new Slot();
+        }
+    }
+
+    /**
+     * 移动到index，direction为正表示向后浏览，为负表示向前浏览。
+     * 窗口内尚未解码的图片按离当前位置的远近排队。
+     */
+    public synchronized void moveTo(int index, int direction) {
+        if (closed) return;
+        current = index;
+        if (direction != 0) {
+            this.direction = direction > 0 ? 1 : -1;
+        }
+        int wanted = 0;
+        for (int k = 0; k < ring.length; k++) {
+            int i = windowIndex(k);
+            if (i < 0 || i >= files.size()) continue;
+            Slot slot = ring[i % ring.length];
+            if (slot.index != i) {
+                slot.index = i;
+                slot.started = false;
+                slot.done = false;
+                slot.image = null;
+            }
+            if (!slot.started) wanted++;
+        }
+        wanted = Math.min(POOL_SIZE, wanted);
+        while (activeWorkers < wanted) {
+            activeWorkers++;
+            executor.execute(this::runWorker);
+        }
+    }
+
+    public synchronized boolean isReady(int index) {
+        Slot slot = slotOf(index);
+        return slot != null && slot.done;
+    }
+
+    /**
+     * 已解码的图片，未就绪或解码失败时返回null，用 {@link #isReady} 区分。
+     */
+    public synchronized BufferedImage getImage(int index) {
+        Slot slot = slotOf(index);
+        return slot != null && slot.done ? slot.image : null;
+    }
+
+    /**
+     * 停止预读并丢弃缓冲，关闭对话框时调用。
+     */
+    public synchronized void close() {
+        closed = true;
+        executor.shutdownNow();
+        for (Slot slot : ring) {
+            slot.index = -1;
+            slot.image = null;
+        }
+    }
+
+    private Slot slotOf(int index) {
+        if (index < 0) return null;
+        Slot slot = ring[index % ring.length];
+        return slot.index == index ? slot : null;
+    }
+
+    // 优先级顺序：当前张，然后沿方向交替取前方和后方，前方用完后取剩余的后方
+    private int windowIndex(int k) {
+        if (k == 0) return current;
+        int forward = 0;
+        int backward = 0;
+        for (int j = 1; j <= k; j++) {
+            boolean takeForward = forward < ahead && (backward >= behind || forward <= backward);
+            if (takeForward) {
+                forward++;
+                if (j == k) return current + direction * forward;
+            } else {
+                backward++;
+                if (j == k) return current - direction * backward;
+            }
+        }
+        return -1;
+    }
+
+    private synchronized Slot next() {
+        if (!closed) {
+            for (int k = 0; k < ring.length; k++) {
+                int i = windowIndex(k);
+                Slot slot = slotOf(i);
+                if (slot != null && !slot.started) {
+                    slot.started = true;
+                    return slot;
+                }
+            }
+        }
+        activeWorkers--;
+        return null;
+    }
+
+    private void runWorker() {
+        Slot slot;
+        while ((slot = next()) != null) {
+            int index;
+            synchronized (this) {
+                index = slot.index;
+            }
+            BufferedImage image = null;
+            try {
+                image = ThumbnailDecoder.decodeToFit(files.get(index), maxWidth, maxHeight);
+            } catch (Exception e) {
+                // 关闭时中断解码引起的异常不用输出
+                if (!closed) e.printStackTrace();
+            }
+            synchronized (this) {
+                // 解码期间窗口已移走，槽位被其他图片占用
+                if (closed || slot.index != index) continue;
+                slot.image = image;
+                slot.done = true;
+            }
+            BufferedImage result = image;
+            SwingUtilities.invokeLater(() -> {
+                if (!closed) listener.imageReady(index, result);
+            });
+        }
+    }
+}
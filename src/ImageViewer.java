@@ -0,0 +1,273 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+
+/**
+ * 幻灯片的图片显示组件。缩放只改变绘制时的变换，每次只绘制可见区域；
+ * 放大到超过预览图分辨率时改用原图的 {@link MipPyramid}，按显示尺寸选取合适的一级；
+ * 超大图片则使用 {@link TiledImageSource} 只解码可见的块，块未就绪时先显示放大的预览图。
+ * 放在JScrollPane中使用，可以拖动平移。
+ */
+public class ImageViewer extends JComponent {
+    private BufferedImage preview;
+    private MipPyramid pyramid;
+    private TiledImageSource tiles;
+    private float zoom = 1.0f;
+    private String message;
+
+    public ImageViewer() {
+        setOpaque(true);
+        setBackground(UIManager.getColor("Panel.background"));
+        setFont(UIManager.getFont("Label.font"));
+        PanListener pan = new PanListener();
+        addMouseListener(pan);
+        addMouseMotionListener(pan);
+    }
+
+    /**
+     * 显示新的图片，缩放倍数1.0对应预览图的尺寸，丢弃上一张图片的金字塔。
+     */
+    public void setImage(BufferedImage preview) {
+        this.preview = preview;
+        this.pyramid = null;
+        this.tiles = null;
+        this.message = null;
+        revalidate();
+        repaint();
+    }
+
+    public BufferedImage getImage() {
+        return preview;
+    }
+
+    /**
+     * 提供更高分辨率的图片，放大时使用。
+     */
+    public void setPyramid(MipPyramid pyramid) {
+        this.pyramid = pyramid;
+        repaint();
+    }
+
+    /**
+     * 超大图片放大时改为分块显示，关闭由调用方负责。
+     */
+    public void setTiledSource(TiledImageSource tiles) {
+        this.tiles = tiles;
+        repaint();
+    }
+
+    /**
+     * 不显示图片，只在中间显示一行文字。
+     */
+    public void setMessage(String message) {
+        this.preview = null;
+        this.pyramid = null;
+        this.tiles = null;
+        this.message = message;
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * 修改缩放倍数，视口中心对应的图片位置保持不变。
+     */
+    public void setZoom(float zoom) {
+        if (this.zoom == zoom) return;
+        JViewport viewport = getViewport();
+        Dimension before = displaySize();
+        double cx = 0.5;
+        double cy = 0.5;
+        if (viewport != null && before.width > 0 && before.height > 0) {
+            Rectangle view = viewport.getViewRect();
+            cx = (view.getCenterX() - offsetX(before)) / before.width;
+            cy = (view.getCenterY() - offsetY(before)) / before.height;
+        }
+        this.zoom = zoom;
+        if (viewport == null) {
+            revalidate();
+            repaint();
+            return;
+        }
+        // 立即调整尺寸和视口位置，不等下一次布局，避免闪一帧错误位置
+        Dimension extent = viewport.getExtentSize();
+        Dimension after = displaySize();
+        Dimension size = new Dimension(Math.max(after.width, extent.width), Math.max(after.height, extent.height));
+        viewport.setViewSize(size);
+        int x = (int) Math.round(offsetX(after, size.width) + cx * after.width - extent.width / 2.0);
+        int y = (int) Math.round(offsetY(after, size.height) + cy * after.height - extent.height / 2.0);
+        viewport.setViewPosition(clampToView(viewport, new Point(x, y)));
+        revalidate();
+        repaint();
+    }
+
+    public float getZoom() {
+        return zoom;
+    }
+
+    private JViewport getViewport() {
+        return getParent() instanceof JViewport ? (JViewport) getParent() : null;
+    }
+
+    private Dimension displaySize() {
+        if (preview == null) return new Dimension(0, 0);
+        return new Dimension(Math.max(1, Math.round(preview.getWidth() * zoom)),
+            Math.max(1, Math.round(preview.getHeight() * zoom)));
+    }
+
+    // 组件比图片大时图片居中
+    private int offsetX(Dimension display) {
+        return offsetX(display, getWidth());
+    }
+
+    private int offsetY(Dimension display) {
+        return offsetY(display, getHeight());
+    }
+
+    private static int offsetX(Dimension display, int width) {
+        return Math.max(0, (width - display.width) / 2);
+    }
+
+    private static int offsetY(Dimension display, int height) {
+        return Math.max(0, (height - display.height) / 2);
+    }
+
+    private static Point clampToView(JViewport viewport, Point p) {
+        Dimension view = viewport.getViewSize();
+        Dimension extent = viewport.getExtentSize();
+        p.x = Math.max(0, Math.min(p.x, view.width - extent.width));
+        p.y = Math.max(0, Math.min(p.y, view.height - extent.height));
+        return p;
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        if (isPreferredSizeSet()) return super.getPreferredSize();
+        return displaySize();
+    }
+
+    // 选取绘制用的图片：显示尺寸不超过预览图时用预览图，否则用金字塔中合适的一级
+    private BufferedImage levelFor(int displayWidth) {
+        if (pyramid == null || displayWidth <= preview.getWidth()) return preview;
+        return pyramid.levelFor(displayWidth);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        if (preview == null) {
+            if (message != null) {
+                Rectangle visible = getVisibleRect();
+                FontMetrics fm = g.getFontMetrics(getFont());
+                g.setColor(getForeground());
+                g.setFont(getFont());
+                g.drawString(message, visible.x + (visible.width - fm.stringWidth(message)) / 2,
+                    visible.y + (visible.height - fm.getHeight()) / 2 + fm.getAscent());
+            }
+            return;
+        }
+
+        Dimension display = displaySize();
+        int ox = offsetX(display);
+        int oy = offsetY(display);
+        Rectangle dest = new Rectangle(ox, oy, display.width, display.height).intersection(clip);
+        if (dest.isEmpty()) return;
+
+        // 只绘制可见部分对应的源区域
+        BufferedImage level = levelFor(display.width);
+        paintRegion(g, level, display, ox, oy, dest);
+        if (tiles != null && display.width > preview.getWidth()) {
+            paintTiles(g, display, ox, oy, dest);
+        }
+    }
+
+    private void paintRegion(Graphics g, BufferedImage level, Dimension display, int ox, int oy, Rectangle dest) {
+        double sx = (double) level.getWidth() / display.width;
+        double sy = (double) level.getHeight() / display.height;
+        int x1 = Math.max(0, (int) Math.floor((dest.x - ox) * sx));
+        int y1 = Math.max(0, (int) Math.floor((dest.y - oy) * sy));
+        int x2 = Math.min(level.getWidth(), (int) Math.ceil((dest.x + dest.width - ox) * sx));
+        int y2 = Math.min(level.getHeight(), (int) Math.ceil((dest.y + dest.height - oy) * sy));
+
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.clip(dest);
+        g2.translate(ox, oy);
+        g2.scale(1 / sx, 1 / sy);
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2.drawImage(level, x1, y1, x2, y2, x1, y1, x2, y2, null);
+        g2.dispose();
+    }
+
+    // 在预览图上叠加已解码的块，并请求视口内缺少的块
+    private void paintTiles(Graphics g, Dimension display, int ox, int oy, Rectangle dest) {
+        int level = tiles.levelFor(display.width);
+        double sx = (double) display.width / tiles.levelWidth(level);
+        double sy = (double) display.height / tiles.levelHeight(level);
+        int maxTx = (tiles.levelWidth(level) - 1) / TiledImageSource.TILE_SIZE;
+        int maxTy = (tiles.levelHeight(level) - 1) / TiledImageSource.TILE_SIZE;
+
+        Rectangle visible = getVisibleRect().intersection(new Rectangle(ox, oy, display.width, display.height));
+        if (!visible.isEmpty()) {
+            tiles.request(level, tileIndex(visible.x - ox, sx, maxTx), tileIndex(visible.y - oy, sy, maxTy),
+                tileIndex(visible.x + visible.width - 1 - ox, sx, maxTx),
+                tileIndex(visible.y + visible.height - 1 - oy, sy, maxTy));
+        }
+
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.clip(dest);
+        g2.translate(ox, oy);
+        g2.scale(sx, sy);
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        int tx1 = tileIndex(dest.x + dest.width - 1 - ox, sx, maxTx);
+        int ty1 = tileIndex(dest.y + dest.height - 1 - oy, sy, maxTy);
+        for (int ty = tileIndex(dest.y - oy, sy, maxTy); ty <= ty1; ty++) {
+            for (int tx = tileIndex(dest.x - ox, sx, maxTx); tx <= tx1; tx++) {
+                BufferedImage tile = tiles.getTile(level, tx, ty);
+                if (tile != null) {
+                    g2.drawImage(tile, tx * TiledImageSource.TILE_SIZE, ty * TiledImageSource.TILE_SIZE, null);
+                }
+            }
+        }
+        g2.dispose();
+    }
+
+    private static int tileIndex(int displayOffset, double scale, int max) {
+        int index = (int) Math.floor(displayOffset / scale) / TiledImageSource.TILE_SIZE;
+        return Math.max(0, Math.min(max, index));
+    }
+
+    // 拖动平移
+    private class PanListener extends MouseAdapter {
+        private Point last;
+
+        @Override
+        public void mousePressed(MouseEvent e) {
+            if (SwingUtilities.isLeftMouseButton(e) && getViewport() != null) {
+                last = e.getLocationOnScreen();
+                setCursor(Cursor.getPredefinedCursor(Cursor.MOVE_CURSOR));
+            }
+        }
+
+        @Override
+        public void mouseDragged(MouseEvent e) {
+            JViewport viewport = getViewport();
+            if (last == null || viewport == null) return;
+            Point now = e.getLocationOnScreen();
+            Point pos = viewport.getViewPosition();
+            pos.translate(last.x - now.x, last.y - now.y);
+            viewport.setViewPosition(clampToView(viewport, pos));
+            last = now;
+        }
+
+        @Override
+        public void mouseReleased(MouseEvent e) {
+            last = null;
+            setCursor(Cursor.getDefaultCursor());
+        }
+    }
+}
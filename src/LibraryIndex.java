@@ -0,0 +1,381 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 图片库索引：若干根目录下所有图片的路径、大小、修改时间、尺寸和拍摄时间。
+ * <p>
+ * 按列存放在基本类型数组中，同一目录的文件连续排列并按名字排序，目录路径只存一次，
+ * 文件名连续存放在一个char数组中（另有一份小写副本供搜索）。几百万条记录也只占几十字节一条，
+ * 搜索时顺序扫描连续内存即可，不需要额外的索引结构。磁盘上同样按列写入并压缩。
+ */
+public class LibraryIndex {
+    private static final int MAGIC = 0x504D4958; // "PMIX"
+    private static final int VERSION = 2;
+
+    private final List<File> roots;
+    private final String[] dirs;
+    // 第d个目录的文件是[dirStart[d], dirStart[d + 1])
+    private final int[] dirStart;
+    // 第i个文件名是nameChars[nameStart[i], nameStart[i + 1])
+    private final char[] nameChars;
+    private final int[] nameStart;
+    private final char[] lowerChars;
+    private final long[] sizes;
+    private final long[] mtimes;
+    private final int[] widths;
+    private final int[] heights;
+    private final long[] captureTimes;
+    private volatile Map<String, Integer> dirLookup;
+
+    LibraryIndex(List<File> roots, String[] dirs, int[] dirStart, char[] nameChars, int[] nameStart, long[] sizes,
+                 long[] mtimes, int[] widths, int[] heights, long[] captureTimes) {
+        this.roots = List.copyOf(roots);
+        this.dirs = dirs;
+        this.dirStart = dirStart;
+        this.nameChars = nameChars;
+        this.nameStart = nameStart;
+        this.lowerChars = new char[nameChars.length];
+        for (int i = 0; i < nameChars.length; i++) {
+            lowerChars[i] = Character.toLowerCase(nameChars[i]);
+        }
+        this.sizes = sizes;
+        this.mtimes = mtimes;
+        this.widths = widths;
+        this.heights = heights;
+        this.captureTimes = captureTimes;
+    }
+
+    static LibraryIndex create(List<File> roots, String[] dirs, int[] dirStart, String[] names, long[] sizes,
+                               long[] mtimes, int[] widths, int[] heights, long[] captureTimes) {
+        int[] nameStart = new int[names.length + 1];
+        for (int i = 0; i < names.length; i++) {
+            nameStart[i + 1] = nameStart[i] + names[i].length();
+        }
+        char[] nameChars = new char[nameStart[names.length]];
+        for (int i = 0; i < names.length; i++) {
+            names[i].getChars(0, names[i].length(), nameChars, nameStart[i]);
+        }
+        return new LibraryIndex(roots, dirs, dirStart, nameChars, nameStart, sizes, mtimes, widths, heights, captureTimes);
+    }
+
+    public static LibraryIndex empty() {
+        return new LibraryIndex(List.of(), new String[0], new int[1], new char[0], new int[1],
+            new long[0], new long[0], new int[0], new int[0], new long[0]);
+    }
+
+    public static File defaultFile() {
+        return new File(AppDirs.configDir(), "library.idx");
+    }
+
+    public List<File> getRoots() {
+        return roots;
+    }
+
+    public int size() {
+        return sizes.length;
+    }
+
+    public int getDirectoryCount() {
+        return dirs.length;
+    }
+
+    public File getFile(int index) {
+        return new File(dirs[directoryOf(index)], getName(index));
+    }
+
+    public String getName(int index) {
+        return new String(nameChars, nameStart[index], nameStart[index + 1] - nameStart[index]);
+    }
+
+    public long getSize(int index) {
+        return sizes[index];
+    }
+
+    public long getModified(int index) {
+        return mtimes[index];
+    }
+
+    public int getWidth(int index) {
+        return widths[index];
+    }
+
+    public int getHeight(int index) {
+        return heights[index];
+    }
+
+    public long getCaptureTime(int index) {
+        return captureTimes[index];
+    }
+
+    private int directoryOf(int index) {
+        int d = Arrays.binarySearch(dirStart, index);
+        if (d < 0) return -d - 2;
+        // 空目录的起点与下一个目录相同，取最后一个
+        while (d + 1 < dirs.length && dirStart[d + 1] == index) d++;
+        return d;
+    }
+
+    /**
+     * 重新扫描时查找上次记录的同一文件，大小和修改时间都没变才返回其下标，否则返回-1。
+     */
+    int find(String dir, String name, long size, long mtime) {
+        Map<String, Integer> lookup = dirLookup;
+        if (lookup == null) {
+            lookup = new HashMap<>(dirs.length * 2);
+            for (int d = 0; d < dirs.length; d++) {
+                lookup.put(dirs[d], d);
+            }
+            dirLookup = lookup;
+        }
+        Integer d = lookup.get(dir);
+        if (d == null) return -1;
+        // 同一目录内按名字排序，二分查找
+        int lo = dirStart[d];
+        int hi = dirStart[d + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareName(mid, name);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return sizes[mid] == size && mtimes[mid] == mtime ? mid : -1;
+            }
+        }
+        return -1;
+    }
+
+    // 与String.compareTo的顺序一致
+    private int compareName(int index, String name) {
+        int start = nameStart[index];
+        int length = nameStart[index + 1] - start;
+        int n = Math.min(length, name.length());
+        for (int k = 0; k < n; k++) {
+            int diff = nameChars[start + k] - name.charAt(k);
+            if (diff != 0) return diff;
+        }
+        return length - name.length();
+    }
+
+    /**
+     * 顺序扫描所有记录，返回匹配的下标。
+     */
+    public int[] search(Query query) {
+        int[] hits = new int[256];
+        int count = 0;
+        for (int d = 0; d < dirs.length; d++) {
+            for (int i = dirStart[d]; i < dirStart[d + 1]; i++) {
+                if (sizes[i] < query.minSize || sizes[i] > query.maxSize) continue;
+                if (query.from != Long.MIN_VALUE || query.to != Long.MAX_VALUE) {
+                    // 没有拍摄时间的文件按修改时间筛选
+                    long time = captureTimes[i] != 0 ? captureTimes[i] : mtimes[i];
+                    if (time < query.from || time >= query.to) continue;
+                }
+                if (!containsAllWords(i, query.words)) continue;
+                if (count == hits.length) hits = Arrays.copyOf(hits, count * 2);
+                hits[count++] = i;
+            }
+        }
+        return Arrays.copyOf(hits, count);
+    }
+
+    public List<File> getFiles(int[] indices) {
+        List<File> files = new ArrayList<>(indices.length);
+        int d = 0;
+        for (int index : indices) {
+            // 下标递增，目录只需向前推进
+            while (d + 1 < dirs.length && dirStart[d + 1] <= index) d++;
+            files.add(new File(dirs[d], getName(index)));
+        }
+        return files;
+    }
+
+    // 每个关键词都要出现在文件名中，顺序不限
+    private boolean containsAllWords(int index, String[] words) {
+        for (String word : words) {
+            if (!containsName(index, word)) return false;
+        }
+        return true;
+    }
+
+    // 在小写副本中查找，query已是小写
+    private boolean containsName(int index, String query) {
+        int n = query.length();
+        int last = nameStart[index + 1] - n;
+        char first = query.charAt(0);
+        for (int start = nameStart[index]; start <= last; start++) {
+            if (lowerChars[start] != first) continue;
+            int k = 1;
+            while (k < n && lowerChars[start + k] == query.charAt(k)) k++;
+            if (k == n) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 搜索条件。文本中"size>5MB"、"size<500KB"限定大小，"date:2023-01-01..2023-06-30"或"date:2023-05-01"
+     * 限定日期，其余文字按空白分成关键词，文件名须包含所有关键词（不区分大小写）。
+     */
+    public static class Query {
+        String[] words = new String[0];
+        long minSize = 0;
+        long maxSize = Long.MAX_VALUE;
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+
+        public static Query parse(String text) {
+            Query query = new Query();
+            List<String> words = new ArrayList<>();
+            for (String token : text.trim().split("\\s+")) {
+                String lower = token.toLowerCase(Locale.ROOT);
+                try {
+                    if (lower.startsWith("size>")) {
+                        query.minSize = parseSize(lower.substring(5));
+                        continue;
+                    } else if (lower.startsWith("size<")) {
+                        query.maxSize = parseSize(lower.substring(5));
+                        continue;
+                    } else if (lower.startsWith("date:")) {
+                        String range = lower.substring(5);
+                        int dots = range.indexOf("..");
+                        String start = dots >= 0 ? range.substring(0, dots) : range;
+                        String end = dots >= 0 ? range.substring(dots + 2) : range;
+                        ZoneId zone = ZoneId.systemDefault();
+                        if (!start.isEmpty()) {
+                            query.from = LocalDate.parse(start).atStartOfDay(zone).toInstant().toEpochMilli();
+                        }
+                        if (!end.isEmpty()) {
+                            query.to = LocalDate.parse(end).plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+                        }
+                        continue;
+                    }
+                } catch (NumberFormatException | DateTimeParseException e) {
+                    // 无法解析的条件当作文件名的一部分
+                }
+                if (!token.isEmpty()) {
+                    words.add(lowerChars(token));
+                }
+            }
+            query.words = words.toArray(new String[0]);
+            return query;
+        }
+
+        // 与索引中lowerChars相同的逐字符小写，不受默认语言环境影响
+        private static String lowerChars(String text) {
+            char[] chars = text.toCharArray();
+            for (int i = 0; i < chars.length; i++) chars[i] = Character.toLowerCase(chars[i]);
+            return new String(chars);
+        }
+
+        private static long parseSize(String text) {
+            long unit = 1;
+            if (text.endsWith("gb")) unit = 1L << 30;
+            else if (text.endsWith("mb")) unit = 1L << 20;
+            else if (text.endsWith("kb")) unit = 1L << 10;
+            String number = text.replaceAll("[a-z]+$", "");
+            return (long) (Double.parseDouble(number) * unit);
+        }
+    }
+
+    // ---- 持久化 ----
+
+    public static LibraryIndex load(File file) {
+        if (!file.isFile()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(new FileInputStream(file)), 65536))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            List<File> roots = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                roots.add(new File(in.readUTF()));
+            }
+            int dirCount = in.readInt();
+            String[] dirs = new String[dirCount];
+            int[] dirStart = new int[dirCount + 1];
+            for (int d = 0; d < dirCount; d++) {
+                dirs[d] = in.readUTF();
+                dirStart[d + 1] = dirStart[d] + in.readInt();
+            }
+            int count = dirStart[dirCount];
+            int[] nameStart = new int[count + 1];
+            for (int i = 0; i < count; i++) {
+                nameStart[i + 1] = nameStart[i] + in.readUnsignedShort();
+            }
+            char[] nameChars = new char[nameStart[count]];
+            for (int i = 0; i < nameChars.length; i++) nameChars[i] = in.readChar();
+            long[] sizes = readLongs(in, count);
+            long[] mtimes = readLongs(in, count);
+            int[] widths = readInts(in, count);
+            int[] heights = readInts(in, count);
+            long[] captureTimes = readLongs(in, count);
+            return new LibraryIndex(roots, dirs, dirStart, nameChars, nameStart, sizes, mtimes, widths, heights, captureTimes);
+        } catch (IOException e) {
+            // 损坏的索引当作不存在，重新扫描即可
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 先写临时文件再替换，写到一半退出也不会损坏原有索引。
+     */
+    public void save(File file) throws IOException {
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        File temp = new File(file.getPath() + ".tmp");
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new DeflaterOutputStream(new FileOutputStream(temp), deflater, 65536), 65536))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(roots.size());
+            for (File root : roots) out.writeUTF(root.getPath());
+            out.writeInt(dirs.length);
+            for (int d = 0; d < dirs.length; d++) {
+                out.writeUTF(dirs[d]);
+                out.writeInt(dirStart[d + 1] - dirStart[d]);
+            }
+            for (int i = 0; i < sizes.length; i++) out.writeShort(nameStart[i + 1] - nameStart[i]);
+            for (char c : nameChars) out.writeChar(c);
+            for (long v : sizes) out.writeLong(v);
+            for (long v : mtimes) out.writeLong(v);
+            for (int v : widths) out.writeInt(v);
+            for (int v : heights) out.writeInt(v);
+            for (long v : captureTimes) out.writeLong(v);
+        } finally {
+            deflater.end();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long[] readLongs(DataInputStream in, int count) throws IOException {
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) values[i] = in.readLong();
+        return values;
+    }
+
+    private static int[] readInts(DataInputStream in, int count) throws IOException {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) values[i] = in.readInt();
+        return values;
+    }
+}
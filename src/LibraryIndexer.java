@@ -0,0 +1,254 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * 并行遍历根目录建立{@link LibraryIndex}。
+ * <p>
+ * 每个目录是一个ForkJoin任务，子目录继续拆分。大小和修改时间与上次索引相同的文件直接沿用上次的尺寸和拍摄时间，
+ * 只有新文件和改动过的文件才读取文件头，重新扫描已经索引过的图片库主要是目录遍历的开销。
+ */
+public class LibraryIndexer {
+    private static final int THREADS = Integer.getInteger("photomanager.indexThreads",
+        Runtime.getRuntime().availableProcessors());
+
+    public interface Listener {
+        /**
+         * 在扫描线程中回调，调用方需要自行切换到EDT。
+         */
+        void progress(int directories, int files);
+    }
+
+    private final List<File> roots;
+    private final LibraryIndex previous;
+    private final Predicate<File> filter;
+    private final Listener listener;
+    private final ConcurrentLinkedQueue<DirResult> results = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger directoryCount = new AtomicInteger();
+    private final AtomicInteger fileCount = new AtomicInteger();
+    private final AtomicInteger headerReads = new AtomicInteger();
+    private volatile boolean cancelled;
+
+    public LibraryIndexer(List<File> roots, LibraryIndex previous, Predicate<File> filter, Listener listener) {
+        this.roots = List.copyOf(roots);
+        this.previous = previous != null ? previous : LibraryIndex.empty();
+        this.filter = filter;
+        this.listener = listener;
+    }
+
+    /**
+     * 阻塞执行扫描。取消时返回null。
+     */
+    public LibraryIndex run() {
+        List<File> scanRoots = normalizeRoots(roots);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, THREADS));
+        try {
+            List<DirTask> tasks = new ArrayList<>();
+            for (File root : scanRoots) {
+                tasks.add(new DirTask(root.toPath()));
+            }
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+        return cancelled ? null : assemble(scanRoots);
+    }
+
+    /**
+     * 取规范路径，去掉重复的根目录和位于另一个根目录之下的根目录，避免同一子树被扫描两次、搜索结果重复。
+     */
+    static List<File> normalizeRoots(List<File> roots) {
+        List<Path> paths = new ArrayList<>();
+        for (File root : roots) {
+            try {
+                paths.add(root.getCanonicalFile().toPath());
+            } catch (IOException e) {
+                paths.add(root.getAbsoluteFile().toPath().normalize());
+            }
+        }
+        // 短路径在前，上级目录先被保留
+        paths.sort(Comparator.comparingInt(Path::getNameCount));
+        List<Path> kept = new ArrayList<>();
+        for (Path path : paths) {
+            boolean nested = false;
+            for (Path parent : kept) {
+                if (path.startsWith(parent)) {
+                    nested = true;
+                    break;
+                }
+            }
+            if (!nested) kept.add(path);
+        }
+        List<File> result = new ArrayList<>(kept.size());
+        for (Path path : kept) {
+            result.add(path.toFile());
+        }
+        return result;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * 本次扫描中实际读取文件头的文件数，其余沿用了上次的记录。
+     */
+    public int getHeaderReads() {
+        return headerReads.get();
+    }
+
+    // 一个目录中的图片，按名字排序
+    private static class DirResult {
+        final String dir;
+        final String[] names;
+        final long[] sizes;
+        final long[] mtimes;
+        final int[] widths;
+        final int[] heights;
+        final long[] captureTimes;
+
+        DirResult(String dir, int count) {
+            this.dir = dir;
+            names = new String[count];
+            sizes = new long[count];
+            mtimes = new long[count];
+            widths = new int[count];
+            heights = new int[count];
+            captureTimes = new long[count];
+        }
+    }
+
+    private class DirTask extends RecursiveAction {
+        private final Path dir;
+
+        DirTask(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled) return;
+            List<DirTask> subdirs = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            List<BasicFileAttributes> attributes = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path path : stream) {
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        if (attrs.isSymbolicLink()) {
+                            // 链接到文件的照常索引，链接到目录的不进入，避免循环
+                            attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                            if (!attrs.isRegularFile()) continue;
+                        }
+                    } catch (IOException e) {
+                        continue; // 无法访问的项跳过
+                    }
+                    String name = path.getFileName().toString();
+                    if (attrs.isDirectory()) {
+                        if (!FileDeleter.STAGING_DIR.equals(name)) {
+                            subdirs.add(new DirTask(path));
+                        }
+                    } else if (attrs.isRegularFile() && filter.test(path.toFile())) {
+                        names.add(name);
+                        attributes.add(attrs);
+                    }
+                }
+            } catch (IOException e) {
+                // 无权限的目录跳过
+            }
+            if (!names.isEmpty()) {
+                collect(names, attributes);
+            }
+            int dirs = directoryCount.incrementAndGet();
+            if (listener != null) {
+                listener.progress(dirs, fileCount.get());
+            }
+            invokeAll(subdirs);
+        }
+
+        private void collect(List<String> names, List<BasicFileAttributes> attributes) {
+            Integer[] order = new Integer[names.size()];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            java.util.Arrays.sort(order, Comparator.comparing(names::get));
+
+            String dirPath = dir.toString();
+            DirResult result = new DirResult(dirPath, order.length);
+            for (int k = 0; k < order.length && !cancelled; k++) {
+                int i = order[k];
+                String name = names.get(i);
+                BasicFileAttributes attrs = attributes.get(i);
+                result.names[k] = name;
+                result.sizes[k] = attrs.size();
+                result.mtimes[k] = attrs.lastModifiedTime().toMillis();
+                int old = previous.find(dirPath, name, result.sizes[k], result.mtimes[k]);
+                if (old >= 0) {
+                    result.widths[k] = previous.getWidth(old);
+                    result.heights[k] = previous.getHeight(old);
+                    result.captureTimes[k] = previous.getCaptureTime(old);
+                } else {
+                    readHeader(new File(dirPath, name), result, k);
+                }
+            }
+            results.add(result);
+            fileCount.addAndGet(order.length);
+        }
+    }
+
+    // 只读文件头，不解码像素；读不出来的字段保持0。尺寸按EXIF方向转换后的显示尺寸保存
+    private void readHeader(File file, DirResult result, int k) {
+        headerReads.incrementAndGet();
+        ImageMetadata metadata = ImageMetadataReader.readHeader(file);
+        result.widths[k] = metadata.getDisplayWidth();
+        result.heights[k] = metadata.getDisplayHeight();
+        result.captureTimes[k] = metadata.getCaptureTime();
+    }
+
+    private LibraryIndex assemble(List<File> scanRoots) {
+        List<DirResult> dirs = new ArrayList<>(results);
+        dirs.sort(Comparator.comparing(r -> r.dir));
+        int total = 0;
+        for (DirResult dir : dirs) total += dir.names.length;
+
+        String[] dirPaths = new String[dirs.size()];
+        int[] dirStart = new int[dirs.size() + 1];
+        String[] names = new String[total];
+        long[] sizes = new long[total];
+        long[] mtimes = new long[total];
+        int[] widths = new int[total];
+        int[] heights = new int[total];
+        long[] captureTimes = new long[total];
+        int pos = 0;
+        for (int d = 0; d < dirs.size(); d++) {
+            DirResult dir = dirs.get(d);
+            int n = dir.names.length;
+            dirPaths[d] = dir.dir;
+            System.arraycopy(dir.names, 0, names, pos, n);
+            System.arraycopy(dir.sizes, 0, sizes, pos, n);
+            System.arraycopy(dir.mtimes, 0, mtimes, pos, n);
+            System.arraycopy(dir.widths, 0, widths, pos, n);
+            System.arraycopy(dir.heights, 0, heights, pos, n);
+            System.arraycopy(dir.captureTimes, 0, captureTimes, pos, n);
+            pos += n;
+            dirStart[d + 1] = pos;
+        }
+        return LibraryIndex.create(scanRoots, dirPaths, dirStart, names, sizes, mtimes, widths, heights, captureTimes);
+    }
+}
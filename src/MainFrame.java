@@ -1,5 +1,6 @@
 import javax.swing.*;
 import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeExpansionListener;
 import javax.swing.event.TreeSelectionEvent;
 import javax.swing.event.TreeSelectionListener;
 import javax.swing.event.TreeWillExpandListener;
@@ -7,13 +8,16 @@ import javax.swing.tree.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.File;
-import java.util.ArrayList;
 import java.util.List;
 
 public class MainFrame extends JFrame {
     private JTree directoryTree;
+    private DirectoryTreeModel treeModel;
     private ThumbnailPanel thumbnailPanel;
     private JLabel infoLabel;
+    private LibraryIndex libraryIndex = LibraryIndex.empty();
+    private LibraryIndexer indexer;
+    private ExactDuplicateFinder duplicateScan;
     public MainFrame() {
         // 先构建目录树再初始化UI组件
         buildDirectoryTree();
@@ -40,95 +44,379 @@ public class MainFrame extends JFrame {
         add(infoLabel, BorderLayout.SOUTH);
         JButton slideShowBtn = new JButton("幻灯片播放");
         slideShowBtn.addActionListener(e -> {
-            File currentDir = thumbnailPanel.getCurrentDirectory();
-            if (currentDir != null) {
-                List<File> images = thumbnailPanel.getImageFiles();
-                if (!images.isEmpty()) {
-                    new SlideShowDialog(MainFrame.this, images, 0).setVisible(true);
-                }
+            // 目录和搜索结果都可以播放
+            List<File> images = thumbnailPanel.getImageFiles();
+            if (!images.isEmpty()) {
+                new SlideShowDialog(MainFrame.this, new java.util.ArrayList<>(images), 0).setVisible(true);
             }
         });
+        JTextField searchField = new JTextField(24);
+        searchField.setToolTipText("文件名关键字，可加 size>5MB size<1MB date:2023-01-01..2023-12-31");
+        searchField.addActionListener(e -> search(searchField.getText()));
+        JButton indexBtn = new JButton("图片库索引");
+        indexBtn.addActionListener(e -> showIndexMenu(indexBtn));
+        // 排序和筛选只重新排列已加载的格子，不重新解码
+        JComboBox<ThumbnailSorter.SortMode> sortBox = new JComboBox<>(ThumbnailSorter.SortMode.values());
+        JCheckBox descendingBox = new JCheckBox("倒序");
+        ActionListener sortAction = e -> thumbnailPanel.setSortMode(
+            (ThumbnailSorter.SortMode) sortBox.getSelectedItem(), descendingBox.isSelected());
+        sortBox.addActionListener(sortAction);
+        descendingBox.addActionListener(sortAction);
+        JButton filterBtn = new JButton("筛选");
+        filterBtn.addActionListener(e -> showFilterMenu(filterBtn));
         JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        topPanel.add(new JLabel("排序:"));
+        topPanel.add(sortBox);
+        topPanel.add(descendingBox);
+        topPanel.add(filterBtn);
+        topPanel.add(new JLabel("搜索:"));
+        topPanel.add(searchField);
+        topPanel.add(indexBtn);
         topPanel.add(slideShowBtn);
         add(topPanel, BorderLayout.NORTH);
 
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                // 窗口显示后再枚举磁盘和恢复会话，不拖慢首帧
+                StartupMetrics.firstFrame();
+                treeModel.load((DirectoryTreeModel.Node) treeModel.getRoot());
+                restoreSession();
+                loadLibraryIndex();
+                // 上次退出时留在暂存目录中的删除批次
+                Thread purge = new Thread(FileDeleter::purgePending, "purge-deleted");
+                purge.setDaemon(true);
+                purge.start();
+            }
+
+            @Override
+            public void windowClosing(WindowEvent e) {
+                thumbnailPanel.purgeDeleted();
+                if (indexer != null) {
+                    indexer.cancel();
+                }
+                File dir = thumbnailPanel.getCurrentDirectory();
+                if (dir != null) {
+                    new Session(dir, thumbnailPanel.getFirstVisibleIndex()).save();
+                }
+            }
+        });
+
     }
 
     private void buildDirectoryTree() {
-        DefaultMutableTreeNode root = new DefaultMutableTreeNode("计算机");
-        File[] roots = File.listRoots();
-        if (roots == null) {
-            JOptionPane.showMessageDialog(this, "无法获取磁盘根目录", "错误", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        for (File rootDir : roots) {
-            DefaultMutableTreeNode node = new DefaultMutableTreeNode(new FileNode(rootDir));
-            root.add(node);
-            loadSubDirectories(node); // 加载第一层子目录
-        }
+        // 目录按需加载，折叠后释放；photomanager.treeShowImages=false时只显示目录
+        treeModel = new DirectoryTreeModel(this::isImageFile,
+            !"false".equals(System.getProperty("photomanager.treeShowImages")));
 
-        directoryTree = new JTree(root);
+        directoryTree = new JTree(treeModel);
         directoryTree.setCellRenderer(new DirectoryTreeCellRenderer()); // 应用自定义渲染器
         directoryTree.setShowsRootHandles(true);
         directoryTree.getSelectionModel().setSelectionMode(TreeSelectionModel.SINGLE_TREE_SELECTION);
+        // 固定行高配合largeModel，JTree只为展开的节点保存状态
+        directoryTree.setRowHeight(Math.max(20, directoryTree.getFontMetrics(directoryTree.getFont()).getHeight() + 4));
+        directoryTree.setLargeModel(true);
 
         // 添加目录选择监听器
         directoryTree.addTreeSelectionListener(e -> {
             TreePath path = e.getPath();
-            if (path != null) {
-                DefaultMutableTreeNode selectedNode = (DefaultMutableTreeNode) path.getLastPathComponent();
-                FileNode fileNode = (FileNode) selectedNode.getUserObject();
-                thumbnailPanel.loadImages(fileNode.getFile());
+            if (path != null && e.isAddedPath()) {
+                Object selected = path.getLastPathComponent();
+                if (selected instanceof DirectoryTreeModel.Placeholder) {
+                    // 选中加载中的占位节点表示取消加载，不在选择事件中修改树结构
+                    DirectoryTreeModel.Node parent = ((DirectoryTreeModel.Placeholder) selected).getParent();
+                    SwingUtilities.invokeLater(() -> cancelLoading(parent));
+                } else if (selected instanceof DirectoryTreeModel.Node && selected != treeModel.getRoot()) {
+                    thumbnailPanel.loadImages(((DirectoryTreeModel.Node) selected).getFile());
+                }
+            }
+        });
+        directoryTree.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                showTreeMenu(e);
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                showTreeMenu(e);
             }
         });
         directoryTree.addTreeWillExpandListener(new TreeWillExpandListener() {
     @Override
     public void treeWillExpand(TreeExpansionEvent event) throws ExpandVetoException {
-        TreePath path = event.getPath();
-        DefaultMutableTreeNode node = (DefaultMutableTreeNode) path.getLastPathComponent();
-        if (node.getChildCount() == 1 && node.getChildAt(0).toString().equals("Loading...")) {
-            node.removeAllChildren(); // 移除占位节点
-            File dir = ((FileNode) node.getUserObject()).getFile();
-            loadSubDirectories(node); // 真实加载子目录
-            ((DefaultTreeModel) directoryTree.getModel()).reload(node);
+        DirectoryTreeModel.Node node = (DirectoryTreeModel.Node) event.getPath().getLastPathComponent();
+        if (treeModel.isUnloaded(node)) {
+            treeModel.load(node); // 后台加载子目录
         }
     }
 
     @Override
     public void treeWillCollapse(TreeExpansionEvent event) throws ExpandVetoException {}
 });
+        directoryTree.addTreeExpansionListener(new TreeExpansionListener() {
+            @Override
+            public void treeExpanded(TreeExpansionEvent event) {}
+
+            @Override
+            public void treeCollapsed(TreeExpansionEvent event) {
+                // 折叠后释放子树（加载中则取消），树占用的内存只与展开的部分有关
+                DirectoryTreeModel.Node node = (DirectoryTreeModel.Node) event.getPath().getLastPathComponent();
+                SwingUtilities.invokeLater(() -> treeModel.release(node));
+            }
+        });
+
+    }
+
+    /**
+     * 在后台读取上次会话，目录仍然存在时重新打开并恢复滚动位置。
+     */
+    private void restoreSession() {
+        new SwingWorker<Session, Void>() {
+            @Override
+            protected Session doInBackground() {
+                Session session = Session.load();
+                // 目录可能在网络驱动器上，检查也放在后台
+                return session != null && session.getLastDirectory().isDirectory() ? session : null;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    Session session = get();
+                    if (session != null && thumbnailPanel.getCurrentDirectory() == null) {
+                        thumbnailPanel.loadImages(session.getLastDirectory(), session.getFirstVisibleIndex());
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }.execute();
+    }
+
+    // 索引文件可能很大，在后台读取；读取完成前搜索的是空索引
+    private void loadLibraryIndex() {
+        new SwingWorker<LibraryIndex, Void>() {
+            @Override
+            protected LibraryIndex doInBackground() {
+                return LibraryIndex.load(LibraryIndex.defaultFile());
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    LibraryIndex index = get();
+                    if (index != null && indexer == null) {
+                        libraryIndex = index;
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }.execute();
+    }
+
+    // 最小尺寸筛选的预设，按长边x短边比较
+    private static final int[][] MIN_SIZES = {{0, 0}, {640, 480}, {1280, 720}, {1920, 1080}, {3840, 2160}};
+
+    private void showFilterMenu(JComponent invoker) {
+        ThumbnailSorter.Filter filter = thumbnailPanel.getFilter();
+        JPopupMenu menu = new JPopupMenu();
+        // 分组结果必须完整显示每一组，否则看不出批量删除会删掉哪些文件
+        boolean grouped = thumbnailPanel.isGroupView();
+        if (grouped) {
+            JMenuItem note = new JMenuItem("分组结果中不筛选");
+            note.setEnabled(false);
+            menu.add(note);
+            menu.addSeparator();
+        }
+        List<String> extensions = new java.util.ArrayList<>();
+        extensions.add(null);
+        extensions.addAll(List.of(thumbnailPanel.getExtensions()));
+        // 当前视图没有的类型也列出来，方便取消
+        if (filter.getExtension() != null && !extensions.contains(filter.getExtension())) {
+            extensions.add(filter.getExtension());
+        }
+        ButtonGroup types = new ButtonGroup();
+        for (String extension : extensions) {
+            JRadioButtonMenuItem item = new JRadioButtonMenuItem(extension == null ? "全部类型"
+                : extension.isEmpty() ? "无扩展名" : extension.toUpperCase(),
+                java.util.Objects.equals(extension, filter.getExtension()));
+            item.setEnabled(!grouped);
+            item.addActionListener(e -> thumbnailPanel.setFilter(thumbnailPanel.getFilter().withExtension(extension)));
+            types.add(item);
+            menu.add(item);
+        }
+        menu.addSeparator();
+        ButtonGroup sizes = new ButtonGroup();
+        for (int[] size : MIN_SIZES) {
+            JRadioButtonMenuItem item = new JRadioButtonMenuItem(size[0] == 0 ? "不限尺寸" : "至少 " + size[0] + "x" + size[1],
+                filter.getMinLongSide() == size[0] && filter.getMinShortSide() == size[1]);
+            item.setEnabled(!grouped);
+            item.addActionListener(e -> thumbnailPanel.setFilter(thumbnailPanel.getFilter().withMinSize(size[0], size[1])));
+            sizes.add(item);
+            menu.add(item);
+        }
+        menu.show(invoker, 0, invoker.getHeight());
+    }
+
+    private void showIndexMenu(JComponent invoker) {
+        JPopupMenu menu = new JPopupMenu();
+        if (indexer != null) {
+            JMenuItem cancelItem = new JMenuItem("取消扫描");
+            cancelItem.addActionListener(e -> indexer.cancel());
+            menu.add(cancelItem);
+        } else {
+            JMenuItem chooseItem = new JMenuItem("选择索引目录...");
+            chooseItem.addActionListener(e -> chooseIndexRoots());
+            menu.add(chooseItem);
+            JMenuItem rescanItem = new JMenuItem("重新扫描");
+            rescanItem.setEnabled(!libraryIndex.getRoots().isEmpty());
+            rescanItem.addActionListener(e -> rebuildIndex(libraryIndex.getRoots()));
+            menu.add(rescanItem);
+        }
+        menu.show(invoker, 0, invoker.getHeight());
+    }
 
+    private void chooseIndexRoots() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        chooser.setMultiSelectionEnabled(true);
+        chooser.setDialogTitle("选择图片库根目录");
+        if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            rebuildIndex(List.of(chooser.getSelectedFiles()));
+        }
     }
 
-    private void loadSubDirectories(DefaultMutableTreeNode parent) {
-        File dir = ((FileNode) parent.getUserObject()).getFile();
-        File[] children = dir.listFiles();
-        if (children != null) {
-            // 先添加子目录
-            for (File childFile : children) {
-                if (childFile.isDirectory() && childFile.canRead()) {
-                    DefaultMutableTreeNode childNode = new DefaultMutableTreeNode(new FileNode(childFile));
-                    childNode.add(new DefaultMutableTreeNode("Loading...")); // 占位节点
-                    parent.add(childNode);
-                    System.out.println("添加目录节点: " + childFile.getAbsolutePath());
+    /**
+     * 在后台扫描根目录，未变化的文件沿用旧索引中的记录，完成后保存到磁盘。
+     */
+    private void rebuildIndex(List<File> roots) {
+        if (roots.isEmpty()) return;
+        LibraryIndexer scan = new LibraryIndexer(roots, libraryIndex, this::isImageFile,
+            (dirs, files) -> SwingUtilities.invokeLater(() -> {
+                if (indexer != null) {
+                    infoLabel.setText("正在建立索引: " + dirs + " 个目录, " + files + " 张图片");
+                }
+            }));
+        indexer = scan;
+        long start = System.nanoTime();
+        new SwingWorker<LibraryIndex, Void>() {
+            @Override
+            protected LibraryIndex doInBackground() throws Exception {
+                LibraryIndex index = scan.run();
+                if (index != null) {
+                    index.save(LibraryIndex.defaultFile());
+                }
+                return index;
+            }
+
+            @Override
+            protected void done() {
+                indexer = null;
+                try {
+                    LibraryIndex index = get();
+                    if (index == null) {
+                        infoLabel.setText("已取消建立索引");
+                        return;
+                    }
+                    libraryIndex = index;
+                    infoLabel.setText(String.format("索引完成: %d 张图片, %d 个目录, 读取文件头 %d 个, 用时 %.1f 秒",
+                        index.size(), index.getDirectoryCount(), scan.getHeaderReads(), (System.nanoTime() - start) / 1e9));
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    infoLabel.setText("建立索引失败: " + e.getMessage());
                 }
             }
-            // 添加所有层级的图片文件并记录完整路径
-            for (File childFile : children) {
-                if (isImageFile(childFile)) {
-                    parent.add(new DefaultMutableTreeNode(new FileNode(childFile)));
-                    System.out.println("添加图片文件: " + childFile.getAbsolutePath());
+        }.execute();
+    }
+
+    private void showTreeMenu(MouseEvent e) {
+        if (!e.isPopupTrigger()) return;
+        TreePath path = directoryTree.getPathForLocation(e.getX(), e.getY());
+        if (path == null || !(path.getLastPathComponent() instanceof DirectoryTreeModel.Node)) return;
+        DirectoryTreeModel.Node node = (DirectoryTreeModel.Node) path.getLastPathComponent();
+        if (node.getParent() == null || !node.isDirectory()) return;
+
+        JPopupMenu menu = new JPopupMenu();
+        if (duplicateScan != null) {
+            JMenuItem cancelItem = new JMenuItem("取消查找重复文件");
+            cancelItem.addActionListener(evt -> duplicateScan.cancel());
+            menu.add(cancelItem);
+        } else {
+            JMenuItem duplicateItem = new JMenuItem("查找重复文件");
+            duplicateItem.addActionListener(evt -> findExactDuplicates(node.getFile()));
+            menu.add(duplicateItem);
+        }
+        menu.show(directoryTree, e.getX(), e.getY());
+    }
+
+    /**
+     * 在目录树中查找内容完全相同的图片，结果显示在缩略图区域，每组保留路径最短的一个，其余预先选中。
+     */
+    private void findExactDuplicates(File dir) {
+        ExactDuplicateFinder scan = new ExactDuplicateFinder(dir, this::isImageFile,
+            (stage, processed, total) -> SwingUtilities.invokeLater(() -> {
+                if (duplicateScan == null) return;
+                if (stage == 1) {
+                    infoLabel.setText("查找重复文件: 已扫描 " + processed + " 个文件");
+                } else {
+                    infoLabel.setText("查找重复文件: " + (stage == 2 ? "比较首尾 " : "比较全文 ") + processed + "/" + total);
                 }
+            }));
+        duplicateScan = scan;
+        new SwingWorker<List<List<File>>, Void>() {
+            @Override
+            protected List<List<File>> doInBackground() throws Exception {
+                return scan.run();
             }
-            // 安全刷新树节点显示
-            if (directoryTree != null) {
-                TreeModel model = directoryTree.getModel();
-                if (model instanceof DefaultTreeModel) {
-                    ((DefaultTreeModel) model).reload(parent);
+
+            @Override
+            protected void done() {
+                duplicateScan = null;
+                try {
+                    List<List<File>> groups = get();
+                    if (groups == null) {
+                        infoLabel.setText("已取消查找重复文件");
+                        return;
+                    }
+                    String stats = String.format("扫描 %d 个文件共 %.1f MB，实际读取 %.1f MB", scan.getScannedFiles(),
+                        scan.getTotalBytes() / (1024.0 * 1024), scan.getBytesRead() / (1024.0 * 1024));
+                    if (groups.isEmpty()) {
+                        infoLabel.setText("没有重复文件（" + stats + "）");
+                        return;
+                    }
+                    directoryTree.clearSelection();
+                    thumbnailPanel.showGroups("重复文件: " + groups.size() + " 组（" + stats + "）", groups);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    infoLabel.setText("查找重复文件失败: " + e.getMessage());
                 }
             }
+        }.execute();
+    }
+
+    private void search(String text) {
+        if (text.trim().isEmpty()) return;
+        LibraryIndex index = libraryIndex;
+        if (index.size() == 0) {
+            infoLabel.setText("图片库索引为空，请先选择索引目录");
+            return;
         }
+        long start = System.nanoTime();
+        int[] hits = index.search(LibraryIndex.Query.parse(text));
+        List<File> files = index.getFiles(hits);
+        directoryTree.clearSelection();
+        thumbnailPanel.showFiles(String.format("搜索: %s（%.0f ms）", text.trim(), (System.nanoTime() - start) / 1e6), files);
+    }
+
+    /**
+     * 取消正在进行的加载并折叠该目录，下次展开时重新加载。
+     */
+    private void cancelLoading(DirectoryTreeModel.Node node) {
+        treeModel.cancel(node);
+        directoryTree.collapsePath(treeModel.pathOf(node));
+        infoLabel.setText("已取消加载: " + node.getFile().getAbsolutePath());
     }
 
     private boolean isImageFile(File file) {
@@ -143,15 +431,6 @@ public class MainFrame extends JFrame {
     }
 }
 
-class FileNode {
-    private File file;
-    public FileNode(File file) { this.file = file; }
-    public File getFile() { return file; }
-    public boolean isDirectory() { return file.isDirectory(); }
-    @Override
-    public String toString() { return file.getName(); }
-}
-
 // 自定义目录树节点渲染器
 class DirectoryTreeCellRenderer extends DefaultTreeCellRenderer {
     private Icon directoryIcon = UIManager.getIcon("FileView.directoryIcon");
@@ -163,10 +442,8 @@ class DirectoryTreeCellRenderer extends DefaultTreeCellRenderer {
         
         super.getTreeCellRendererComponent(tree, value, sel, expanded, leaf, row, hasFocus);
         
-        DefaultMutableTreeNode node = (DefaultMutableTreeNode) value;
-        if (node.getUserObject() instanceof FileNode) {
-            FileNode fileNode = (FileNode) node.getUserObject();
-            setIcon(fileNode.isDirectory() ? directoryIcon : fileIcon);
+        if (value instanceof DirectoryTreeModel.Node && ((DirectoryTreeModel.Node) value).getParent() != null) {
+            setIcon(((DirectoryTreeModel.Node) value).isDirectory() ? directoryIcon : fileIcon);
         }
         return this;
     }
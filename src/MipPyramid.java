@@ -0,0 +1,61 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 图片的多级缩小版本，每级宽高减半。缩放显示时选取不小于显示尺寸的最小一级，
+ * 避免每次都从原图缩放。
+ */
+public class MipPyramid {
+    // levels[0]为原图，逐级减半
+    private final BufferedImage[] levels;
+
+    private MipPyramid(BufferedImage[] levels) {
+        this.levels = levels;
+    }
+
+    /**
+     * 从原图逐级减半生成，直到宽度不大于minWidth为止。
+     */
+    public static MipPyramid build(BufferedImage source, int minWidth) {
+        List<BufferedImage> list = new ArrayList<>();
+        list.add(source);
+        BufferedImage current = source;
+        while (current.getWidth() / 2 >= Math.max(1, minWidth) && current.getHeight() / 2 >= 1) {
+            current = half(current);
+            list.add(current);
+        }
+        return new MipPyramid(list.toArray(new BufferedImage[0]));
+    }
+
+    private static BufferedImage half(BufferedImage src) {
+        int type = src.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage next = new BufferedImage(src.getWidth() / 2, src.getHeight() / 2, type);
+        Graphics2D g = next.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(src, 0, 0, next.getWidth(), next.getHeight(), null);
+        g.dispose();
+        return next;
+    }
+
+    public int getWidth() {
+        return levels[0].getWidth();
+    }
+
+    public int getHeight() {
+        return levels[0].getHeight();
+    }
+
+    /**
+     * 宽度不小于displayWidth的最小一级；显示尺寸超过原图时返回原图。
+     */
+    public BufferedImage levelFor(int displayWidth) {
+        for (int i = levels.length - 1; i > 0; i--) {
+            if (levels[i].getWidth() >= displayWidth) {
+                return levels[i];
+            }
+        }
+        return levels[0];
+    }
+}
@@ -0,0 +1,36 @@
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * 64位差值哈希（dHash）：缩成9x8灰度图，比较每行相邻像素的亮度。
+ * 缩放、重新压缩、轻微调色后的同一张图片哈希只差几位，用汉明距离判断相似程度。
+ */
+public class PerceptualHash {
+    private PerceptualHash() {}
+
+    public static long dHash(BufferedImage image) {
+        BufferedImage small = new BufferedImage(9, 8, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = small.createGraphics();
+        // 输入已经是小缩略图，双线性足以平均掉噪点
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(image, 0, 0, 9, 8, null);
+        g.dispose();
+
+        byte[] pixels = ((java.awt.image.DataBufferByte) small.getRaster().getDataBuffer()).getData();
+        long hash = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                int left = pixels[y * 9 + x] & 0xFF;
+                int right = pixels[y * 9 + x + 1] & 0xFF;
+                hash = (hash << 1) | (left > right ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
@@ -0,0 +1,67 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * 上次会话的状态（打开的目录和滚动位置），保存在配置目录下的session.properties中。
+ */
+public class Session {
+    private static final String FILE_NAME = "session.properties";
+
+    private File lastDirectory;
+    private int firstVisibleIndex;
+
+    public Session(File lastDirectory, int firstVisibleIndex) {
+        this.lastDirectory = lastDirectory;
+        this.firstVisibleIndex = firstVisibleIndex;
+    }
+
+    public File getLastDirectory() {
+        return lastDirectory;
+    }
+
+    public int getFirstVisibleIndex() {
+        return firstVisibleIndex;
+    }
+
+    /**
+     * 读取上次会话，文件不存在或无法读取时返回null。
+     */
+    public static Session load() {
+        File file = new File(AppDirs.configDir(), FILE_NAME);
+        if (!file.isFile()) return null;
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            props.load(in);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        String dir = props.getProperty("lastDirectory");
+        if (dir == null || dir.isEmpty()) return null;
+        int index = 0;
+        try {
+            index = Integer.parseInt(props.getProperty("firstVisibleIndex", "0"));
+        } catch (NumberFormatException e) {
+            // 保持默认值
+        }
+        return new Session(new File(dir), Math.max(0, index));
+    }
+
+    public void save() {
+        File dir = AppDirs.configDir();
+        if (!dir.isDirectory() && !dir.mkdirs()) return;
+        Properties props = new Properties();
+        props.setProperty("lastDirectory", lastDirectory.getAbsolutePath());
+        props.setProperty("firstVisibleIndex", String.valueOf(firstVisibleIndex));
+        try (OutputStream out = new FileOutputStream(new File(dir, FILE_NAME))) {
+            props.store(out, "photo-manager session");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
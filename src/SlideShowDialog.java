@@ -4,19 +4,36 @@ import java.awt.event.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.List;
-import javax.imageio.ImageIO;
 
 public class SlideShowDialog extends JDialog {
+    // 沿浏览方向预读的张数和反方向保留的张数
+    private static final int PREFETCH_AHEAD = Integer.getInteger("photomanager.slideshowAhead", 3);
+    private static final int PREFETCH_BEHIND = Integer.getInteger("photomanager.slideshowBehind", 1);
+    private static final float MAX_SCALE = 5.0f;
+    // 超过这个像素数的图片放大时分块解码，不整张解码
+    private static final long TILED_THRESHOLD = Long.getLong("photomanager.tiledThresholdMP", 50) * 1000 * 1000;
+
     private List<File> imageFiles;
     private int currentIndex;
-    private JLabel imageLabel;
+    private ImageViewer viewer;
     private float scaleFactor = 1.0f;
     private Timer timer;
+    private final ImagePrefetcher prefetcher;
+    private final Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
+    // 当前图片放大用的高分辨率版本的加载任务
+    private SwingWorker<Object, Void> sourceWorker;
+    private TiledImageSource tiledSource;
 
     public SlideShowDialog(JFrame parent, List<File> imageFiles, int startIndex) {
         super(parent, "幻灯片播放", true);
         this.imageFiles = imageFiles;
         this.currentIndex = startIndex;
+        // 预读的图片按屏幕尺寸解码，缩放倍数1.0对应适合屏幕的大小
+        this.prefetcher = new ImagePrefetcher(imageFiles, screen.width, screen.height,
+            PREFETCH_AHEAD, PREFETCH_BEHIND, (index, image) -> {
+                if (index == currentIndex) updateImage();
+            });
+        prefetcher.moveTo(currentIndex, 1);
         initUI();
     }
 
@@ -26,10 +43,9 @@ public class SlideShowDialog extends JDialog {
         setLayout(new BorderLayout());
 
         // 图片展示区域
-        imageLabel = new JLabel();
-        imageLabel.setHorizontalAlignment(SwingConstants.CENTER);
+        viewer = new ImageViewer();
         updateImage();
-        add(new JScrollPane(imageLabel), BorderLayout.CENTER);
+        add(new JScrollPane(viewer), BorderLayout.CENTER);
 
         // 操作栏
         JPanel controlPanel = new JPanel(new FlowLayout());
@@ -61,28 +77,106 @@ public class SlideShowDialog extends JDialog {
             @Override
             public void windowClosing(WindowEvent e) {
                 stopAutoPlay();
+                cancelSourceLoad();
+                prefetcher.close();
             }
         });
     }
 
     private void updateImage() {
         if (imageFiles.isEmpty()) {
-            imageLabel.setIcon(null);
-            imageLabel.setText("无可用图片");
+            viewer.setMessage("无可用图片");
+            return;
+        }
+
+        // 只取预读缓冲中的结果，EDT上不做解码；未就绪时等预读完成回调再刷新
+        if (!prefetcher.isReady(currentIndex)) {
+            viewer.setMessage("加载中...");
+            return;
+        }
+        BufferedImage image = prefetcher.getImage(currentIndex);
+        if (image == null) {
+            viewer.setMessage("图片加载失败");
             return;
         }
+        if (viewer.getImage() != image) {
+            viewer.setImage(image);
+        }
+        viewer.setZoom(scaleFactor);
+        if (scaleFactor > 1.0f) {
+            loadSource();
+        }
+    }
+
+    /**
+     * 放大超过屏幕尺寸时在后台解码更高分辨率的版本并生成金字塔，每张图片只加载一次。
+     * 超大图片不整张解码，改为打开分块解码源。
+     */
+    private void loadSource() {
+        BufferedImage preview = viewer.getImage();
+        if (sourceWorker != null || preview == null) return;
+        int index = currentIndex;
+        File file = imageFiles.get(index);
+        sourceWorker = new SwingWorker<Object, Void>() {
+            // 已打开的分块源。被取消的任务拿不到get()的结果，由done()通过这里关闭没有采用的源
+            private volatile TiledImageSource opened;
 
-        try {
-            File file = imageFiles.get(currentIndex);
-            BufferedImage original = ImageIO.read(file);
-            Image scaled = original.getScaledInstance(
-                (int)(original.getWidth() * scaleFactor),
-                (int)(original.getHeight() * scaleFactor),
-                Image.SCALE_SMOOTH
-            );
-            imageLabel.setIcon(new ImageIcon(scaled));
-        } catch (Exception e) {
-            imageLabel.setText("图片加载失败");
+            @Override
+            protected Object doInBackground() throws Exception {
+                TiledImageSource tiled = TiledImageSource.open(file, () -> SwingUtilities.invokeLater(viewer::repaint));
+                if (tiled == null) return null;
+                opened = tiled;
+                if (isCancelled()) {
+                    tiled.close();
+                    return null;
+                }
+                if ((long) tiled.getWidth() * tiled.getHeight() > TILED_THRESHOLD) {
+                    return tiled;
+                }
+                tiled.close();
+
+                int maxWidth = (int) (screen.width * MAX_SCALE);
+                int maxHeight = (int) (screen.height * MAX_SCALE);
+                BufferedImage source = ThumbnailDecoder.decodeToFit(file, maxWidth, maxHeight);
+                if (source == null || source.getWidth() <= preview.getWidth() || isCancelled()) {
+                    return null;
+                }
+                return MipPyramid.build(source, preview.getWidth());
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || index != currentIndex) {
+                    // close可以重复调用，后台线程可能已经关闭过
+                    TiledImageSource unused = opened;
+                    if (unused != null) unused.close();
+                    return;
+                }
+                try {
+                    Object result = get();
+                    if (result instanceof TiledImageSource) {
+                        tiledSource = (TiledImageSource) result;
+                        viewer.setTiledSource(tiledSource);
+                    } else if (result instanceof MipPyramid) {
+                        viewer.setPyramid((MipPyramid) result);
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        sourceWorker.execute();
+    }
+
+    private void cancelSourceLoad() {
+        if (sourceWorker != null) {
+            sourceWorker.cancel(true);
+            sourceWorker = null;
+        }
+        if (tiledSource != null) {
+            viewer.setTiledSource(null);
+            tiledSource.close();
+            tiledSource = null;
         }
     }
 
@@ -98,19 +192,31 @@ public class SlideShowDialog extends JDialog {
             return;
         }
 
+        prefetcher.moveTo(newIndex, newIndex - currentIndex);
+        cancelSourceLoad();
         currentIndex = newIndex;
         updateImage();
     }
 
     private void zoomImage(float factor) {
         scaleFactor *= factor;
-        scaleFactor = Math.max(0.1f, Math.min(scaleFactor, 5.0f)); // 限制缩放范围
-        updateImage();
+        scaleFactor = Math.max(0.1f, Math.min(scaleFactor, MAX_SCALE)); // 限制缩放范围
+        // 缩放只改变绘制变换，不重新读取文件
+        if (viewer.getImage() == null) return;
+        viewer.setZoom(scaleFactor);
+        if (scaleFactor > 1.0f) {
+            loadSource();
+        }
     }
 
     private void startAutoPlay() {
         if (timer == null) {
-            timer = new Timer(1000, e -> showImage(currentIndex + 1));
+            timer = new Timer(1000, e -> {
+                // 下一张还没预读完时本次跳过，不显示"加载中"
+                int next = currentIndex + 1;
+                if (next < imageFiles.size() && !prefetcher.isReady(next)) return;
+                showImage(next);
+            });
             timer.start();
         }
     }
@@ -121,4 +227,4 @@ public class SlideShowDialog extends JDialog {
             timer = null;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,37 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * 启动耗时统计：从JVM启动到首帧显示、到第一张缩略图显示的时间。
+ * 每项只记录一次并输出到标准输出，便于跟踪启动性能的回归。只在EDT上调用。
+ */
+public class StartupMetrics {
+    private static long firstFrameMillis = -1;
+    private static long firstThumbnailMillis = -1;
+
+    private StartupMetrics() {}
+
+    public static void firstFrame() {
+        if (firstFrameMillis >= 0) return;
+        firstFrameMillis = uptime();
+        System.out.println("启动耗时 首帧: " + firstFrameMillis + " ms");
+    }
+
+    public static void firstThumbnail() {
+        if (firstThumbnailMillis >= 0) return;
+        firstThumbnailMillis = uptime();
+        System.out.println("启动耗时 首张缩略图: " + firstThumbnailMillis + " ms");
+    }
+
+    /** 未发生时返回-1 */
+    public static long getFirstFrameMillis() {
+        return firstFrameMillis;
+    }
+
+    public static long getFirstThumbnailMillis() {
+        return firstThumbnailMillis;
+    }
+
+    private static long uptime() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+}
@@ -3,25 +3,62 @@ import java.awt.*;
 import java.io.File;
 
 public class Thumbnail extends JPanel {
+    public static final int CELL_SIZE = 160;
+    static final Color SELECT_COLOR = new Color(0, 150, 255);
     private boolean isSelected = false;
-    private static final Color SELECT_COLOR = new Color(0, 150, 255);
     private File file; // 新增文件引用字段
+    private JLabel imageLabel;
+    private JLabel nameLabel;
+    private int index; // 在网格中的位置，对应选择模型的索引
+    private boolean loaded; // 已填入缩略图或已确定无法预览
 
     public Thumbnail(Icon icon, File file) {
         this.file = file; // 保存文件引用
         setLayout(new BorderLayout());
-        JLabel imageLabel = new JLabel(icon);
-        JLabel nameLabel = new JLabel(file.getName(), SwingConstants.CENTER);
+        imageLabel = new JLabel(icon, SwingConstants.CENTER);
+        nameLabel = new JLabel(file.getName(), SwingConstants.CENTER);
         add(imageLabel, BorderLayout.CENTER);
         add(nameLabel, BorderLayout.SOUTH);
-        setPreferredSize(new Dimension(160, 160));
+        setPreferredSize(new Dimension(CELL_SIZE, CELL_SIZE));
     }
 
     public File getFile() {
         return file; // 直接返回保存的文件引用
     }
 
+    // 文件重命名后更新显示的名字
+    public void setFile(File file) {
+        this.file = file;
+        nameLabel.setText(file.getName());
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    // 占位格子解码完成后填入缩略图
+    public void setIcon(Icon icon) {
+        imageLabel.setText(null);
+        imageLabel.setIcon(icon);
+        loaded = true;
+    }
+
+    public void setLoadFailed() {
+        imageLabel.setIcon(null);
+        imageLabel.setText("无法预览");
+        loaded = true;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
     public void setSelected(boolean selected) {
+        if (isSelected == selected) return;
         isSelected = selected;
         repaint();
     }
@@ -0,0 +1,336 @@
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.ImageIcon;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 缩略图解码：JPEG优先使用文件头内嵌的预览图；否则用ImageReadParam的源子采样
+ * 直接读出接近目标尺寸的图像，再做高质量缩放，避免整张原图解码。
+ * 结果按EXIF方向旋转/翻转为正常显示方向。
+ * 同时统计每张缩略图解码过程中分配的字节数，便于对比优化效果。
+ */
+public class ThumbnailDecoder {
+    // 设置 -Dphotomanager.legacyDecode=true 可切回整图解码，用于对比分配量
+    private static final boolean LEGACY = Boolean.getBoolean("photomanager.legacyDecode");
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN = initThreadBean();
+    private static final AtomicLong decodedCount = new AtomicLong();
+    private static final AtomicLong allocatedBytes = new AtomicLong();
+    private static final AtomicLong embeddedCount = new AtomicLong();
+
+    private ThumbnailDecoder() {}
+
+    private static com.sun.management.ThreadMXBean initThreadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported()) {
+                sunBean.setThreadAllocatedMemoryEnabled(true);
+                return sunBean;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 解码缩略图，结果等比缩放到不超过 maxSize x maxSize。
+     * 无法识别的格式返回null。
+     */
+    public static BufferedImage decode(File file, int maxSize) throws IOException {
+        long before = allocatedOnThisThread();
+        try {
+            if (LEGACY) {
+                return decodeFullResolution(file, maxSize);
+            }
+            // JPEG文件头只读一次，内嵌预览图和方向都从这里取
+            ExifReader.JpegHeader header = ExifReader.isJpeg(file) ? ExifReader.read(file) : null;
+            int orientation = header == null ? 1 : header.orientation;
+            BufferedImage embedded = decodeEmbedded(header, maxSize);
+            if (embedded != null) {
+                embeddedCount.incrementAndGet();
+                return applyOrientation(embedded, orientation);
+            }
+            return applyOrientation(decodeSubsampled(file, maxSize), orientation);
+        } finally {
+            long after = allocatedOnThisThread();
+            if (before >= 0 && after >= 0) {
+                allocatedBytes.addAndGet(after - before);
+                decodedCount.incrementAndGet();
+            }
+        }
+    }
+
+    private static BufferedImage decodeSubsampled(File file, int maxSize) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            if (in == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                // 子采样后保留约两倍目标尺寸，给最终缩放留出余量以保证质量
+                int step = Math.max(1, Math.max(width, height) / (maxSize * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                BufferedImage sampled = reader.read(0, param);
+                return scaleToFit(sampled, maxSize);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 只读文件头取得图片尺寸，不解码像素；无法识别时返回null。
+     */
+    public static Dimension readSize(File file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            if (in == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 解码整张图片并等比缩小到不超过 maxWidth x maxHeight，不放大，用于幻灯片等整屏显示。
+     * 同样按比例子采样读取，不会先解出整张原图。
+     */
+    public static BufferedImage decodeToFit(File file, int maxWidth, int maxHeight) throws IOException {
+        ImageMetadata metadata = ImageMetadataReader.read(file);
+        if (metadata.isTransposed()) {
+            // 旋转90度的图片按存储方向缩放时，宽高限制也要互换
+            return applyOrientation(decodeStoredToFit(file, maxHeight, maxWidth), metadata.getOrientation());
+        }
+        return applyOrientation(decodeStoredToFit(file, maxWidth, maxHeight), metadata.getOrientation());
+    }
+
+    private static BufferedImage decodeStoredToFit(File file, int maxWidth, int maxHeight) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            if (in == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                int step = Math.max(1, Math.max(width / (maxWidth * 2), height / (maxHeight * 2)));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                BufferedImage sampled = reader.read(0, param);
+                Dimension target = fitSize(sampled.getWidth(), sampled.getHeight(), maxWidth, maxHeight);
+                if (target.width == sampled.getWidth() && target.height == sampled.getHeight()) {
+                    return sampled;
+                }
+                return scaleTo(sampled, target.width, target.height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 只读JPEG文件头，内嵌预览图存在且不小于目标尺寸时直接使用，否则返回null。
+     */
+    private static BufferedImage decodeEmbedded(ExifReader.JpegHeader header, int maxSize) throws IOException {
+        if (header == null || header.width <= 0 || header.height <= 0) return null;
+
+        BufferedImage preview = null;
+        if (header.exifThumbnail != null) {
+            preview = ImageIO.read(new ByteArrayInputStream(header.exifThumbnail));
+        }
+        if (preview == null && header.jfifThumbnail != null) {
+            preview = header.jfifThumbnailIsJpeg
+                ? ImageIO.read(new ByteArrayInputStream(header.jfifThumbnail))
+                : rgbToImage(header.jfifThumbnail, header.jfifThumbWidth, header.jfifThumbHeight);
+        }
+        if (preview == null) return null;
+
+        preview = matchAspect(preview, header.width, header.height);
+        Dimension target = fitSize(header.width, header.height, maxSize);
+        if (preview.getWidth() < target.width || preview.getHeight() < target.height) {
+            return null;
+        }
+        return scaleTo(preview, target.width, target.height);
+    }
+
+    private static BufferedImage rgbToImage(byte[] rgb, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0, p = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, p += 3) {
+                image.setRGB(x, y, (rgb[p] & 0xFF) << 16 | (rgb[p + 1] & 0xFF) << 8 | (rgb[p + 2] & 0xFF));
+            }
+        }
+        return image;
+    }
+
+    /**
+     * 相机常把3:2的预览图加黑边放进160x120，比例不一致且多出的边为黑色时裁掉黑边；
+     * 否则认为预览图是拉伸过的，交给后续缩放恢复比例。
+     */
+    private static BufferedImage matchAspect(BufferedImage preview, int width, int height) {
+        int pw = preview.getWidth();
+        int ph = preview.getHeight();
+        double expected = (double) width / height;
+        if (Math.abs((double) pw / ph - expected) / expected < 0.02) {
+            return preview;
+        }
+        Rectangle content;
+        if ((double) pw / ph > expected) {
+            int w = (int) Math.round(ph * expected);
+            content = new Rectangle((pw - w) / 2, 0, w, ph);
+        } else {
+            int h = (int) Math.round(pw / expected);
+            content = new Rectangle(0, (ph - h) / 2, pw, h);
+        }
+        if (content.width <= 0 || content.height <= 0) return preview;
+        return isDarkOutside(preview, content)
+            ? preview.getSubimage(content.x, content.y, content.width, content.height)
+            : preview;
+    }
+
+    private static boolean isDarkOutside(BufferedImage image, Rectangle content) {
+        long sum = 0;
+        int count = 0;
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                if (content.contains(x, y)) continue;
+                int rgb = image.getRGB(x, y);
+                sum += ((rgb >> 16) & 0xFF) + ((rgb >> 8) & 0xFF) + (rgb & 0xFF);
+                count++;
+            }
+        }
+        return count > 0 && sum / (count * 3) < 16;
+    }
+
+    // 旧的整图解码方式，仅用于对比
+    private static BufferedImage decodeFullResolution(File file, int maxSize) throws IOException {
+        BufferedImage original = ImageIO.read(file);
+        if (original == null) return null;
+        Dimension size = fitSize(original.getWidth(), original.getHeight(), maxSize);
+        Image scaled = original.getScaledInstance(size.width, size.height, Image.SCALE_SMOOTH);
+        BufferedImage result = new BufferedImage(size.width, size.height, imageType(original));
+        Graphics2D g = result.createGraphics();
+        // ImageIcon会同步等待缩放完成
+        g.drawImage(new ImageIcon(scaled).getImage(), 0, 0, null);
+        g.dispose();
+        return applyOrientation(result, ImageMetadataReader.read(file).getOrientation());
+    }
+
+    /**
+     * 按EXIF方向(1~8)把存储方向的像素转换为显示方向，方向为1时原样返回。
+     */
+    public static BufferedImage applyOrientation(BufferedImage src, int orientation) {
+        if (src == null || orientation <= 1 || orientation > 8) return src;
+        int w = src.getWidth();
+        int h = src.getHeight();
+        AffineTransform transform;
+        switch (orientation) {
+            case 2: transform = new AffineTransform(-1, 0, 0, 1, w, 0); break;   // 水平翻转
+            case 3: transform = new AffineTransform(-1, 0, 0, -1, w, h); break;  // 旋转180度
+            case 4: transform = new AffineTransform(1, 0, 0, -1, 0, h); break;   // 垂直翻转
+            case 5: transform = new AffineTransform(0, 1, 1, 0, 0, 0); break;    // 沿主对角线翻转
+            case 6: transform = new AffineTransform(0, 1, -1, 0, h, 0); break;   // 顺时针90度
+            case 7: transform = new AffineTransform(0, -1, -1, 0, h, w); break;  // 沿副对角线翻转
+            default: transform = new AffineTransform(0, -1, 1, 0, 0, w); break;  // 逆时针90度
+        }
+        boolean transposed = orientation >= 5;
+        BufferedImage result = new BufferedImage(transposed ? h : w, transposed ? w : h, imageType(src));
+        Graphics2D g = result.createGraphics();
+        // 整数坐标的直角变换，像素一一对应，不需要插值
+        g.drawImage(src, transform, null);
+        g.dispose();
+        return result;
+    }
+
+    /**
+     * 逐级减半的双线性缩放，最后一步缩放到精确尺寸，效果接近SCALE_SMOOTH但快得多。
+     */
+    public static BufferedImage scaleToFit(BufferedImage src, int maxSize) {
+        Dimension target = fitSize(src.getWidth(), src.getHeight(), maxSize);
+        return scaleTo(src, target.width, target.height);
+    }
+
+    private static BufferedImage scaleTo(BufferedImage src, int targetWidth, int targetHeight) {
+        int type = imageType(src);
+        BufferedImage current = src;
+        int w = src.getWidth();
+        int h = src.getHeight();
+        do {
+            w = Math.max(targetWidth, w / 2);
+            h = Math.max(targetHeight, h / 2);
+            BufferedImage next = new BufferedImage(w, h, type);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(current, 0, 0, w, h, null);
+            g.dispose();
+            current = next;
+        } while (w != targetWidth || h != targetHeight);
+        return current;
+    }
+
+    private static Dimension fitSize(int width, int height, int maxSize) {
+        return fitSize(width, height, maxSize, maxSize);
+    }
+
+    private static Dimension fitSize(int width, int height, int maxWidth, int maxHeight) {
+        if (width <= maxWidth && height <= maxHeight) {
+            return new Dimension(Math.max(1, width), Math.max(1, height));
+        }
+        double ratio = Math.min((double) maxWidth / width, (double) maxHeight / height);
+        return new Dimension(Math.max(1, (int) Math.round(width * ratio)),
+            Math.max(1, (int) Math.round(height * ratio)));
+    }
+
+    private static int imageType(BufferedImage image) {
+        return image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+    }
+
+    private static long allocatedOnThisThread() {
+        return THREAD_BEAN == null ? -1 : THREAD_BEAN.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * 平均每张缩略图解码分配的字节数，JVM不支持统计时返回-1。
+     */
+    public static long getAverageAllocatedBytes() {
+        long count = decodedCount.get();
+        return count == 0 ? -1 : allocatedBytes.get() / count;
+    }
+
+    public static long getDecodedCount() {
+        return decodedCount.get();
+    }
+
+    /**
+     * 直接使用内嵌预览图完成的缩略图数量。
+     */
+    public static long getEmbeddedCount() {
+        return embeddedCount.get();
+    }
+}
@@ -0,0 +1,419 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 持久化缩略图缓存，存放在用户缓存目录下。
+ * <p>
+ * 像素以BGR/ABGR原始字节追加写入数据包文件(pack-N.dat)，读取时通过内存映射直接拷入
+ * BufferedImage的栅格；索引(index-N.log)是追加式日志，启动时回放重建。
+ * 源文件长度或修改时间变化时条目自动失效；失效数据超过一半或总量超过上限时，
+ * 在后台把仍然有效的条目按最近使用顺序重写到新一代文件中。
+ */
+public class ThumbnailDiskCache {
+    private static final long DEFAULT_MAX_BYTES =
+        Long.getLong("photomanager.thumbCacheMB", 512) * 1024 * 1024;
+    // 数据包整体映射，不能超过单个MappedByteBuffer的2GB上限
+    private static final long MAX_PACK_BYTES = 1536L * 1024 * 1024;
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_REMOVE = 2;
+
+    private static ThumbnailDiskCache defaultCache;
+    private static boolean defaultCacheFailed;
+
+    private final File dir;
+    private final long maxBytes;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "thumbnail-cache-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // 访问顺序，最久未用的在前
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(1024, 0.75f, true);
+    private int generation;
+    private FileChannel pack;
+    private DataOutputStream indexLog;
+    private volatile MappedByteBuffer mapped;
+    private long packSize;
+    private long liveBytes;
+    private boolean compacting;
+
+    private static class Entry {
+        final long length;
+        final long lastModified;
+        final long offset;
+        final int width;
+        final int height;
+        final boolean alpha;
+
+        Entry(long length, long lastModified, long offset, int width, int height, boolean alpha) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.offset = offset;
+            this.width = width;
+            this.height = height;
+            this.alpha = alpha;
+        }
+
+        int dataLength() {
+            return width * height * (alpha ? 4 : 3);
+        }
+    }
+
+    public ThumbnailDiskCache(File dir, long maxBytes) throws IOException {
+        this.dir = dir;
+        this.maxBytes = Math.min(maxBytes, MAX_PACK_BYTES);
+        Files.createDirectories(dir.toPath());
+        open(readCurrentGeneration());
+        if (packSize - liveBytes > packSize / 2 || packSize > this.maxBytes) {
+            scheduleCompaction();
+        }
+    }
+
+    /**
+     * 默认缓存实例，首次使用时打开；打开失败则返回null，调用方直接跳过缓存。
+     */
+    public static synchronized ThumbnailDiskCache getDefault() {
+        if (defaultCache == null && !defaultCacheFailed) {
+            try {
+                // 缩略图从"thumbs2"起按EXIF方向旋转保存，旧目录中未旋转的缩略图直接丢弃
+                defaultCache = new ThumbnailDiskCache(new File(AppDirs.cacheDir(), "thumbs2"), DEFAULT_MAX_BYTES);
+                deleteObsolete(new File(AppDirs.cacheDir(), "thumbs"));
+            } catch (IOException e) {
+                defaultCacheFailed = true;
+                e.printStackTrace();
+            }
+        }
+        return defaultCache;
+    }
+
+    private static void deleteObsolete(File oldDir) {
+        File[] files = oldDir.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            file.delete();
+        }
+        oldDir.delete();
+    }
+
+    /**
+     * 查找缓存的缩略图，未命中或源文件已变化时返回null。
+     */
+    public BufferedImage get(ThumbnailKey key) {
+        Entry entry;
+        ByteBuffer buffer;
+        synchronized (this) {
+            entry = entries.get(key.getPath());
+            if (entry == null) return null;
+            if (entry.length != key.getLength() || entry.lastModified != key.getLastModified()) {
+                // 源文件已修改，条目作废
+                remove(key.getPath(), entry);
+                return null;
+            }
+            buffer = mappedFor(entry);
+        }
+        if (buffer == null) return null;
+
+        BufferedImage image = new BufferedImage(entry.width, entry.height,
+            entry.alpha ? BufferedImage.TYPE_4BYTE_ABGR : BufferedImage.TYPE_3BYTE_BGR);
+        byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        buffer.get((int) entry.offset, pixels, 0, pixels.length);
+        return image;
+    }
+
+    /**
+     * 写入缩略图，键中的长度和修改时间应在解码前取得。
+     */
+    public void put(ThumbnailKey key, BufferedImage image) {
+        boolean alpha = image.getColorModel().hasAlpha();
+        BufferedImage raw = toRawType(image, alpha);
+        byte[] pixels = ((DataBufferByte) raw.getRaster().getDataBuffer()).getData();
+
+        synchronized (this) {
+            try {
+                long offset = packSize;
+                ByteBuffer data = ByteBuffer.wrap(pixels);
+                while (data.hasRemaining()) {
+                    pack.write(data, offset + data.position());
+                }
+                packSize += pixels.length;
+                Entry entry = new Entry(key.getLength(), key.getLastModified(), offset,
+                    raw.getWidth(), raw.getHeight(), alpha);
+                Entry old = entries.put(key.getPath(), entry);
+                if (old != null) liveBytes -= old.dataLength();
+                liveBytes += pixels.length;
+                writePut(indexLog, key.getPath(), entry);
+                indexLog.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            if (packSize > maxBytes || (packSize > 16L * 1024 * 1024 && packSize - liveBytes > packSize / 2)) {
+                scheduleCompaction();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getPackSize() {
+        return packSize;
+    }
+
+    private void remove(String path, Entry entry) {
+        entries.remove(path);
+        liveBytes -= entry.dataLength();
+        try {
+            indexLog.writeByte(RECORD_REMOVE);
+            indexLog.writeUTF(path);
+            indexLog.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // 条目超出当前映射范围时重新映射（数据包只会追加）
+    private ByteBuffer mappedFor(Entry entry) {
+        long end = entry.offset + entry.dataLength();
+        if (end > Integer.MAX_VALUE) return null;
+        MappedByteBuffer current = mapped;
+        if (current == null || current.capacity() < end) {
+            try {
+                current = pack.map(FileChannel.MapMode.READ_ONLY, 0, packSize);
+                mapped = current;
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+        return current;
+    }
+
+    private static BufferedImage toRawType(BufferedImage image, boolean alpha) {
+        int type = alpha ? BufferedImage.TYPE_4BYTE_ABGR : BufferedImage.TYPE_3BYTE_BGR;
+        if (image.getType() == type) return image;
+        BufferedImage raw = new BufferedImage(image.getWidth(), image.getHeight(), type);
+        Graphics2D g = raw.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return raw;
+    }
+
+    private File packFile(int gen) {
+        return new File(dir, "pack-" + gen + ".dat");
+    }
+
+    private File indexFile(int gen) {
+        return new File(dir, "index-" + gen + ".log");
+    }
+
+    private int readCurrentGeneration() {
+        File current = new File(dir, "CURRENT");
+        try {
+            return Integer.parseInt(new String(Files.readAllBytes(current.toPath()), StandardCharsets.US_ASCII).trim());
+        } catch (IOException | NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void writeCurrentGeneration(int gen) throws IOException {
+        File tmp = new File(dir, "CURRENT.tmp");
+        Files.write(tmp.toPath(), String.valueOf(gen).getBytes(StandardCharsets.US_ASCII));
+        Files.move(tmp.toPath(), new File(dir, "CURRENT").toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void open(int gen) throws IOException {
+        generation = gen;
+        pack = FileChannel.open(packFile(gen).toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        packSize = pack.size();
+        boolean truncatedLog = replayIndex(indexFile(gen));
+        indexLog = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(indexFile(gen), true)));
+        if (truncatedLog) {
+            // 上次异常退出留下半条记录，重写索引避免后续追加错位
+            scheduleCompaction();
+        }
+        deleteOtherGenerations();
+    }
+
+    // 返回日志末尾是否有不完整的记录
+    private boolean replayIndex(File index) throws IOException {
+        entries.clear();
+        liveBytes = 0;
+        if (!index.exists()) return false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(index)))) {
+            while (true) {
+                int type = in.read();
+                if (type < 0) return false;
+                String path = in.readUTF();
+                if (type == RECORD_PUT) {
+                    Entry entry = new Entry(in.readLong(), in.readLong(), in.readLong(),
+                        in.readInt(), in.readInt(), in.readBoolean());
+                    if (entry.offset + entry.dataLength() > packSize) continue;
+                    Entry old = entries.put(path, entry);
+                    if (old != null) liveBytes -= old.dataLength();
+                    liveBytes += entry.dataLength();
+                } else if (type == RECORD_REMOVE) {
+                    Entry old = entries.remove(path);
+                    if (old != null) liveBytes -= old.dataLength();
+                } else {
+                    return true;
+                }
+            }
+        } catch (EOFException e) {
+            return true;
+        }
+    }
+
+    private static void writePut(DataOutputStream out, String path, Entry entry) throws IOException {
+        out.writeByte(RECORD_PUT);
+        out.writeUTF(path);
+        out.writeLong(entry.length);
+        out.writeLong(entry.lastModified);
+        out.writeLong(entry.offset);
+        out.writeInt(entry.width);
+        out.writeInt(entry.height);
+        out.writeBoolean(entry.alpha);
+    }
+
+    // 旧代文件在Windows上可能仍被映射而删不掉，留到下次启动再清理
+    private void deleteOtherGenerations() {
+        File[] files = dir.listFiles((d, name) -> name.startsWith("pack-") || name.startsWith("index-"));
+        if (files == null) return;
+        for (File file : files) {
+            if (!file.equals(packFile(generation)) && !file.equals(indexFile(generation))) {
+                file.delete();
+            }
+        }
+    }
+
+    private void scheduleCompaction() {
+        if (compacting) return;
+        compacting = true;
+        compactor.execute(() -> {
+            try {
+                compact();
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                synchronized (this) {
+                    compacting = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * 把有效条目按最近使用顺序写入下一代文件，总量控制在上限的3/4以内，
+     * 最久未使用的条目被淘汰。压缩期间新写入的条目会丢失，只需重新解码。
+     */
+    private void compact() throws IOException {
+        List<Map.Entry<String, Entry>> snapshot;
+        ByteBuffer source;
+        int nextGen;
+        synchronized (this) {
+            snapshot = new ArrayList<>(entries.entrySet());
+            source = packSize == 0 ? null : pack.map(FileChannel.MapMode.READ_ONLY, 0, packSize);
+            nextGen = generation + 1;
+        }
+
+        // 从最近使用的一端开始保留
+        long budget = maxBytes * 3 / 4;
+        List<Map.Entry<String, Entry>> kept = new ArrayList<>();
+        long keptBytes = 0;
+        for (int i = snapshot.size() - 1; i >= 0; i--) {
+            Entry entry = snapshot.get(i).getValue();
+            if (entry.offset + entry.dataLength() > Integer.MAX_VALUE) continue;
+            if (keptBytes + entry.dataLength() > budget) break;
+            keptBytes += entry.dataLength();
+            kept.add(snapshot.get(i));
+        }
+
+        // 按从旧到新写入，回放后访问顺序与原来一致
+        LinkedHashMap<String, Entry> rewritten = new LinkedHashMap<>(kept.size() * 2, 0.75f, true);
+        try (FileChannel out = FileChannel.open(packFile(nextGen).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             DataOutputStream index = new DataOutputStream(new BufferedOutputStream(
+                 new FileOutputStream(indexFile(nextGen))))) {
+            long offset = 0;
+            for (int i = kept.size() - 1; i >= 0; i--) {
+                Map.Entry<String, Entry> e = kept.get(i);
+                Entry old = e.getValue();
+                ByteBuffer data = source.duplicate();
+                data.limit((int) old.offset + old.dataLength()).position((int) old.offset);
+                long position = offset;
+                while (data.hasRemaining()) {
+                    position += out.write(data, position);
+                }
+                Entry moved = new Entry(old.length, old.lastModified, offset, old.width, old.height, old.alpha);
+                writePut(index, e.getKey(), moved);
+                rewritten.put(e.getKey(), moved);
+                offset += old.dataLength();
+            }
+        }
+
+        synchronized (this) {
+            FileChannel newPack = FileChannel.open(packFile(nextGen).toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+            DataOutputStream newLog = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(indexFile(nextGen), true)));
+            // 压缩期间已作废或被替换的条目不再保留
+            Map<String, Entry> original = new java.util.HashMap<>();
+            for (Map.Entry<String, Entry> e : kept) {
+                original.put(e.getKey(), e.getValue());
+            }
+            long newLive = 0;
+            for (Iterator<Map.Entry<String, Entry>> it = rewritten.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, Entry> e = it.next();
+                if (entries.get(e.getKey()) != original.get(e.getKey())) {
+                    it.remove();
+                    newLog.writeByte(RECORD_REMOVE);
+                    newLog.writeUTF(e.getKey());
+                } else {
+                    newLive += e.getValue().dataLength();
+                }
+            }
+            newLog.flush();
+
+            pack.close();
+            indexLog.close();
+            pack = newPack;
+            indexLog = newLog;
+            mapped = null;
+            packSize = newPack.size();
+            liveBytes = newLive;
+            entries.clear();
+            entries.putAll(rewritten);
+            generation = nextGen;
+            writeCurrentGeneration(nextGen);
+            deleteOtherGenerations();
+        }
+    }
+}
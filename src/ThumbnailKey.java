@@ -0,0 +1,48 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 缩略图缓存键：规范路径 + 文件长度 + 修改时间，源文件变化后键随之改变。
+ */
+public final class ThumbnailKey {
+    private final String path;
+    private final long length;
+    private final long lastModified;
+
+    public ThumbnailKey(String path, long length, long lastModified) {
+        this.path = path;
+        this.length = length;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * 读取文件当前状态生成键，需要访问磁盘，不要在EDT上调用。
+     */
+    public static ThumbnailKey of(File file) throws IOException {
+        return new ThumbnailKey(file.getCanonicalPath(), file.length(), file.lastModified());
+    }
+
+    public String getPath() { return path; }
+
+    public long getLength() { return length; }
+
+    public long getLastModified() { return lastModified; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ThumbnailKey)) return false;
+        ThumbnailKey other = (ThumbnailKey) o;
+        return length == other.length && lastModified == other.lastModified && path.equals(other.path);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = path.hashCode();
+        h = 31 * h + Long.hashCode(length);
+        return 31 * h + Long.hashCode(lastModified);
+    }
+
+    @Override
+    public String toString() { return path; }
+}
@@ -0,0 +1,180 @@
+import java.io.File;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 缩略图解码引擎：按CPU核数创建固定大小的线程池并行解码，
+ * 优先解码当前视口内的图片，滚动时可随时调整优先区间。
+ */
+public class ThumbnailLoader<T> {
+    private static final int POOL_SIZE = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(POOL_SIZE, r -> {
+        Thread t = new Thread(r, "thumbnail-decoder-" + THREAD_COUNTER.incrementAndGet());
+        t.setDaemon(true);
+        t.setPriority(Thread.NORM_PRIORITY - 1);
+        return t;
+    });
+
+    private final Function<File, T> decoder;
+
+    public ThumbnailLoader(Function<File, T> decoder) {
+        this.decoder = decoder;
+    }
+
+    public int getPoolSize() {
+        return POOL_SIZE;
+    }
+
+    /**
+     * 提交一批文件全部解码，结果在工作线程中回调，调用方自行切换到EDT。
+     */
+    public Job submit(List<File> files, ResultHandler<T> handler) {
+        Job job = new Job(files, handler);
+        job.request(0, files.size());
+        return job;
+    }
+
+    /**
+     * 创建按需解码的任务，只有通过 {@link Job#request} 请求的索引才会被解码。
+     */
+    public Job submitOnDemand(List<File> files, ResultHandler<T> handler) {
+        return new Job(files, handler);
+    }
+
+    public interface ResultHandler<T> {
+        /** image为null表示解码失败 */
+        void thumbnailReady(int index, File file, T image);
+    }
+
+    public class Job {
+        private final List<File> files;
+        private final ResultHandler<T> handler;
+        private final BitSet pending;
+        // 已分派过的索引，避免重复解码
+        private final BitSet dispatched;
+        private int focusFrom = 0;
+        private int activeWorkers = 0;
+        private volatile boolean cancelled = false;
+
+        private Job(List<File> files, ResultHandler<T> handler) {
+            this.files = files;
+            this.handler = handler;
+            this.pending = new BitSet(files.size());
+            this.dispatched = new BitSet(files.size());
+        }
+
+        /**
+         * 设置优先解码的起始索引（通常是视口内第一个可见的格子）。
+         */
+        public synchronized void prioritize(int firstVisible) {
+            focusFrom = Math.max(0, firstVisible);
+        }
+
+        /**
+         * 请求解码 [from, to) 内尚未解码的索引，并从from开始优先处理。
+         */
+        public synchronized void request(int from, int to) {
+            if (cancelled) return;
+            from = Math.max(0, from);
+            to = Math.min(files.size(), to);
+            if (from >= to) return;
+            BitSet range = new BitSet(to);
+            range.set(from, to);
+            range.andNot(dispatched);
+            pending.or(range);
+            focusFrom = from;
+            int wanted = Math.min(POOL_SIZE, pending.cardinality());
+            while (activeWorkers < wanted) {
+                activeWorkers++;
+                executor.execute(this::runWorker);
+            }
+        }
+
+        /**
+         * 调用方已有这些索引的结果（例如重新排序前已解码的格子），之后的请求跳过它们。
+         */
+        public synchronized void skip(BitSet indices) {
+            dispatched.or(indices);
+            pending.andNot(indices);
+        }
+
+        /**
+         * 调用方丢弃了某个索引的结果，之后可以再次请求解码。
+         */
+        public synchronized void forget(int index) {
+            dispatched.clear(index);
+            pending.clear(index);
+        }
+
+        // 取下一个待解码索引：从视口开始向后，最后回头处理视口之前的
+        private synchronized int next() {
+            int i = cancelled ? -1 : pending.nextSetBit(focusFrom);
+            if (i < 0 && !cancelled) {
+                i = pending.previousSetBit(focusFrom - 1);
+            }
+            if (i >= 0) {
+                pending.clear(i);
+                dispatched.set(i);
+            } else {
+                activeWorkers--;
+                notifyAll();
+            }
+            return i;
+        }
+
+        private void runWorker() {
+            int i;
+            while ((i = next()) >= 0) {
+                File file = files.get(i);
+                T image = null;
+                try {
+                    image = decoder.apply(file);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                if (cancelled) continue;
+                handler.thumbnailReady(i, file, image);
+            }
+        }
+
+        public synchronized void cancel() {
+            cancelled = true;
+            notifyAll();
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * 已请求的索引都已处理完毕（或任务已取消）。
+         */
+        public synchronized boolean isDone() {
+            return cancelled || (activeWorkers == 0 && pending.isEmpty());
+        }
+
+        /**
+         * 阻塞等待已请求的解码全部完成或任务取消。
+         */
+        public synchronized void await() throws InterruptedException {
+            while (activeWorkers > 0 && !cancelled) {
+                wait();
+            }
+        }
+
+        /**
+         * 阻塞直到任务被取消，用于按需解码任务的生命周期。
+         */
+        public synchronized void awaitCancel() throws InterruptedException {
+            while (!cancelled) {
+                wait();
+            }
+        }
+    }
+}
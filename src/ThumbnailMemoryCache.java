@@ -0,0 +1,128 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 进程内缩略图缓存，切换目录时不丢弃已解码的缩略图。
+ * <p>
+ * 强引用部分按字节预算做LRU淘汰；被淘汰的图片转入软引用层，
+ * 内存充足时仍可命中，内存紧张时由GC回收。
+ */
+public class ThumbnailMemoryCache {
+    private static final long DEFAULT_BUDGET =
+        Long.getLong("photomanager.thumbMemoryMB", 128) * 1024 * 1024;
+    private static final ThumbnailMemoryCache DEFAULT = new ThumbnailMemoryCache(DEFAULT_BUDGET);
+
+    private final long budgetBytes;
+    private final LinkedHashMap<ThumbnailKey, BufferedImage> strong = new LinkedHashMap<>(256, 0.75f, true);
+    private final HashMap<ThumbnailKey, KeyedSoftReference> soft = new HashMap<>();
+    private final ReferenceQueue<BufferedImage> collected = new ReferenceQueue<>();
+    private long strongBytes;
+
+    private long hits;
+    private long softHits;
+    private long misses;
+    private long evictions;
+
+    private static class KeyedSoftReference extends SoftReference<BufferedImage> {
+        final ThumbnailKey key;
+
+        KeyedSoftReference(ThumbnailKey key, BufferedImage image, ReferenceQueue<BufferedImage> queue) {
+            super(image, queue);
+            this.key = key;
+        }
+    }
+
+    public ThumbnailMemoryCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    public static ThumbnailMemoryCache getDefault() {
+        return DEFAULT;
+    }
+
+    public synchronized BufferedImage get(ThumbnailKey key) {
+        expungeCollected();
+        BufferedImage image = strong.get(key);
+        if (image != null) {
+            hits++;
+            return image;
+        }
+        KeyedSoftReference ref = soft.remove(key);
+        image = ref != null ? ref.get() : null;
+        if (image != null) {
+            // 软引用层命中后提升回强引用层
+            softHits++;
+            putStrong(key, image);
+            return image;
+        }
+        misses++;
+        return null;
+    }
+
+    public synchronized void put(ThumbnailKey key, BufferedImage image) {
+        expungeCollected();
+        soft.remove(key);
+        putStrong(key, image);
+    }
+
+    public synchronized void clear() {
+        strong.clear();
+        soft.clear();
+        strongBytes = 0;
+    }
+
+    private void putStrong(ThumbnailKey key, BufferedImage image) {
+        BufferedImage old = strong.put(key, image);
+        if (old != null) strongBytes -= sizeOf(old);
+        strongBytes += sizeOf(image);
+
+        Iterator<Map.Entry<ThumbnailKey, BufferedImage>> it = strong.entrySet().iterator();
+        while (strongBytes > budgetBytes && it.hasNext()) {
+            Map.Entry<ThumbnailKey, BufferedImage> eldest = it.next();
+            if (eldest.getKey().equals(key)) break;
+            it.remove();
+            strongBytes -= sizeOf(eldest.getValue());
+            soft.put(eldest.getKey(), new KeyedSoftReference(eldest.getKey(), eldest.getValue(), collected));
+            evictions++;
+        }
+    }
+
+    // 清理已被GC回收的软引用条目
+    private void expungeCollected() {
+        KeyedSoftReference ref;
+        while ((ref = (KeyedSoftReference) collected.poll()) != null) {
+            if (soft.get(ref.key) == ref) {
+                soft.remove(ref.key);
+            }
+        }
+    }
+
+    // 按栅格实际占用计算：TYPE_INT_RGB每像素存4字节，而getPixelSize()只有24位
+    private static long sizeOf(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks()
+            * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    public synchronized long getHits() { return hits; }
+
+    public synchronized long getSoftHits() { return softHits; }
+
+    public synchronized long getMisses() { return misses; }
+
+    public synchronized long getEvictions() { return evictions; }
+
+    public synchronized long getStrongBytes() { return strongBytes; }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("命中 %d | 软引用命中 %d | 未命中 %d | 淘汰 %d | 占用 %.1f/%.1f MB",
+            hits, softHits, misses, evictions, strongBytes / (1024.0 * 1024), budgetBytes / (1024.0 * 1024));
+    }
+}
@@ -13,26 +13,94 @@ import java.util.List;
 import java.util.stream.Collectors;
 import javax.imageio.ImageIO;
 
-public class ThumbnailPanel extends JPanel {
+public class ThumbnailPanel extends JPanel implements Scrollable {
     private static final int THUMB_SIZE = 150;
+    // 图片数超过该值时改用虚拟化网格，只绘制可见格子
+    private static final int VIRTUAL_THRESHOLD = Integer.getInteger("photomanager.virtualThreshold", 2000);
+    // 虚拟模式下视口上下各预取/保留的屏数
+    private static final int PREFETCH_SCREENS = 1;
+    private static final int RETAIN_SCREENS = 3;
+    // 设为true时删除先移入暂存目录以便撤销，默认直接删除
+    private static final boolean UNDOABLE_DELETE = Boolean.getBoolean("photomanager.deleteUndo");
     private File currentDirectory;
+    // 当前显示内容的标题（目录名或搜索条件），每次切换内容viewId加一
+    private String viewTitle;
+    private int viewId;
     private java.awt.datatransfer.Clipboard clipboard = 
         Toolkit.getDefaultToolkit().getSystemClipboard();
-    private int lastSelectedIndex = -1; // 初始化最后选中索引
 
     private List<File> imageFiles = new ArrayList<>();
-    private List<Thumbnail> selectedThumbs = new ArrayList<>();
+    private final ThumbnailSelectionModel selection = new ThumbnailSelectionModel();
     private InfoUpdater infoUpdater;
+    private final WrapLayout wrapLayout = new WrapLayout(FlowLayout.LEFT, 10, 10);
+    private final VirtualThumbnailGrid virtualGrid;
+    private boolean virtualMode = false;
 
     public ThumbnailPanel(InfoUpdater infoUpdater) {
         this.infoUpdater = infoUpdater;
-        setLayout(new WrapLayout(FlowLayout.LEFT, 10, 10));
-        addMouseListener(new SelectionMouseListener());
-        addMouseMotionListener(new SelectionMouseListener());
+        setLayout(wrapLayout);
+        setFocusable(true);
+        // 组件模式下只更新状态变化区间内的缩略图，虚拟网格自行重绘对应格子
+        selection.addListener((first, last) -> {
+            if (virtualMode) return;
+            int end = Math.min(last, getComponentCount() - 1);
+            for (int i = first; i <= end; i++) {
+                ((Thumbnail) getComponent(i)).setSelected(selection.isSelected(i));
+            }
+        });
+        getInputMap(WHEN_ANCESTOR_OF_FOCUSED_COMPONENT).put(
+            KeyStroke.getKeyStroke(KeyEvent.VK_A, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()), "selectAll");
+        getActionMap().put("selectAll", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                selectAll();
+            }
+        });
+        getInputMap(WHEN_ANCESTOR_OF_FOCUSED_COMPONENT).put(
+            KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "cancelOperation");
+        getActionMap().put("cancelOperation", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                cancelPaste();
+                cancelDelete();
+                if (activeFinder != null) {
+                    activeFinder.cancel();
+                }
+            }
+        });
+        getInputMap(WHEN_ANCESTOR_OF_FOCUSED_COMPONENT).put(
+            KeyStroke.getKeyStroke(KeyEvent.VK_Z, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()), "undoDelete");
+        getActionMap().put("undoDelete", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                undoDelete();
+            }
+        });
+        virtualGrid = new VirtualThumbnailGrid(selection, new VirtualThumbnailGrid.Listener() {
+            @Override
+            public void openItem(int index) {
+                openSlideShow(index);
+            }
+
+            @Override
+            public void showContextMenu(MouseEvent e) {
+                createContextMenu(e);
+            }
+
+            @Override
+            public void selectionChanged(int selectedCount) {
+                infoUpdater.updateInfo(selectionInfo());
+            }
+        });
+        // 按下和拖动必须是同一个实例，才能拿到拖动起点
+        SelectionMouseListener rubberBand = new SelectionMouseListener();
+        addMouseListener(rubberBand);
+        addMouseMotionListener(rubberBand);
         // 添加空白区域点击支持
         addMouseListener(new MouseAdapter() {
             @Override
             public void mousePressed(MouseEvent e) {
+                requestFocusInWindow();
                 if (SwingUtilities.isLeftMouseButton(e)) {
                     boolean clickedOnThumbnail = false;
                     for (Component comp : getComponents()) {
@@ -42,9 +110,7 @@ public class ThumbnailPanel extends JPanel {
                         }
                     }
                     if (!clickedOnThumbnail) {
-                        selectedThumbs.forEach(t -> t.setSelected(false));
-                        selectedThumbs.clear();
-                        repaint();
+                        selection.clear();
                     }
                 }
             }
@@ -61,122 +127,721 @@ public class ThumbnailPanel extends JPanel {
         });
     }
 
-    private SwingWorker<Void, Thumbnail> currentWorker;
-    
+    private SwingWorker<Void, DecodedThumb> currentWorker;
+    // 只读文件头得到的尺寸、拍摄时间和方向，仅在EDT访问
+    private final java.util.Map<File, ImageMetadata> metadata = new java.util.HashMap<>();
+    // 当前视图的全部文件（加载顺序），imageFiles是其中经过筛选、排序后显示的部分
+    private final List<File> viewFiles = new ArrayList<>();
+    // 被筛选隐藏的格子（仅组件模式），取消筛选时直接放回，不重新解码
+    private final java.util.Map<File, Thumbnail> hiddenThumbs = new java.util.HashMap<>();
+    private ThumbnailSorter sortKeys;
+    // viewFiles每次变化加一，排序键对应的版本相同时才可用
+    private int viewVersion;
+    private int keysVersion = -1;
+    private ThumbnailSorter.SortMode sortMode = ThumbnailSorter.SortMode.NONE;
+    private boolean sortDescending;
+    private ThumbnailSorter.Filter filter = ThumbnailSorter.Filter.NONE;
+    // 分组视图中每个文件的组号，普通视图为null；分组视图只在组内排序，不筛选
+    private java.util.Map<File, Integer> viewGroups;
+    private ThumbnailLoader<BufferedImage>.Job currentJob;
+    private final ThumbnailLoader<BufferedImage> loader = new ThumbnailLoader<>(this::decodeThumbnail);
+    // 目录增量变化触发的解码任务，切换目录时一并取消
+    private final List<ThumbnailLoader<BufferedImage>.Job> refreshJobs = new ArrayList<>();
+    private final DirectoryWatcher watcher = createWatcher();
+    private long totalSize;
+    // 正在进行的粘贴，run()请求取消；在EDT上启动任务前设置，粘贴结束时清空
+    private Runnable activePaste;
+    // 最近一次剪切的文件，粘贴后清空
+    private List<File> cutFiles;
+    private FileDeleter activeDeleter;
+    private DuplicateFinder activeFinder;
+    // 最近一次暂存删除，可以撤销；再次删除或退出时才真正删除
+    private FileDeleter lastDelete;
+
     public void loadImages(File dir) {
+        loadImages(dir, 0);
+    }
+
+    /**
+     * 加载目录，格子放好后滚动到scrollToIndex所在的行（恢复上次会话时使用）。
+     */
+    public void loadImages(File dir, int scrollToIndex) {
+        showView(dir, "目录: " + dir.getName(), () -> {
+            FileDeleter.sweep(dir);
+            File[] files = dir.listFiles(f -> f.isFile() && isImageFile(f));
+            return files == null ? List.of() : List.of(files);
+        }, scrollToIndex, null);
+    }
+
+    /**
+     * 在网格中显示一组不属于同一目录的文件（搜索结果等）。此时没有当前目录，不能粘贴，也不监视变化。
+     */
+    public void showFiles(String title, List<File> files) {
+        showFiles(title, files, null);
+    }
+
+    /**
+     * 同上，格子放好后选中initialSelection中的下标。
+     */
+    public void showFiles(String title, List<File> files, java.util.BitSet initialSelection) {
+        List<File> copy = List.copyOf(files);
+        showView(null, title, () -> copy, 0, initialSelection);
+    }
+
+    /**
+     * 按组连续显示一批文件（相似图片、重复文件），每组除第一张外都预先选中，确认后直接删除即可每组只保留一张。
+     * 排序只在组内进行，筛选条件不生效，各组始终完整、连续地显示。
+     */
+    public void showGroups(String title, List<List<File>> groups) {
+        List<File> files = new ArrayList<>();
+        java.util.BitSet extra = new java.util.BitSet();
+        java.util.Map<File, Integer> groupOf = new java.util.HashMap<>();
+        for (int g = 0; g < groups.size(); g++) {
+            List<File> group = groups.get(g);
+            extra.set(files.size() + 1, files.size() + group.size());
+            for (File file : group) {
+                groupOf.put(file, g);
+            }
+            files.addAll(group);
+        }
+        showFiles(title, files, extra);
+        viewGroups = groupOf;
+    }
+
+    /**
+     * 当前是否是分组视图，此时筛选不生效。
+     */
+    public boolean isGroupView() {
+        return viewGroups != null;
+    }
+
+    private void showView(File dir, String title, java.util.concurrent.Callable<List<File>> source,
+                          int scrollToIndex, java.util.BitSet initialSelection) {
         // 取消之前的加载任务
         if (currentWorker != null && !currentWorker.isDone()) {
             currentWorker.cancel(true);
         }
+        if (currentJob != null) {
+            currentJob.cancel();
+            currentJob = null;
+        }
+        refreshJobs.forEach(ThumbnailLoader.Job::cancel);
+        refreshJobs.clear();
+        if (watcher != null) {
+            watcher.watch(dir);
+        }
 
         // 初始化界面（移除加载提示）
         this.currentDirectory = dir;
+        this.viewTitle = title;
+        viewId++;
+        int version = ++viewVersion;
         removeAll();
         imageFiles.clear();
-        selectedThumbs.clear();
+        viewFiles.clear();
+        hiddenThumbs.clear();
+        viewGroups = null;
+        sortKeys = null;
+        metadata.clear();
+        selection.reset();
+        virtualGrid.setFiles(imageFiles);
+        setVirtualMode(false);
         revalidate();
         repaint();
 
         // 创建后台加载任务
         currentWorker = new SwingWorker<>() {
+            private long totalSize;
+            private ThumbnailLoader<BufferedImage>.Job ownJob;
+
             @Override
             protected Void doInBackground() throws Exception {
-                File[] files = dir.listFiles(f -> {
-                    String name = f.getName().toLowerCase();
-                    return f.isFile() && (name.endsWith(".jpg") || name.endsWith(".jpeg")
-                        || name.endsWith(".png") || name.endsWith(".gif")
-                        || name.endsWith(".bmp"));
-                });
+                List<File> fileList = source.call();
+                if (fileList.isEmpty()) {
+                    SwingUtilities.invokeLater(() -> {
+                        if (!isCancelled()) updateInfo(0);
+                    });
+                    return null;
+                }
 
-                if (files != null) {
-                    for (File file : files) {
-                        if (isCancelled()) return null;
-                        
-                        try {
-                            BufferedImage original = ImageIO.read(file);
-                            if (original == null) continue;
-                            
-                            int width = THUMB_SIZE;
-                            int height = (int) ((double) original.getHeight() / original.getWidth() * THUMB_SIZE);
-                            Image scaled = original.getScaledInstance(width, height, Image.SCALE_SMOOTH);
-                            Thumbnail thumb = new Thumbnail(new ImageIcon(scaled), file);
-                            // 添加事件监听器
-                            thumb.addMouseListener(new ThumbnailClickListener());
-                            thumb.addMouseListener(new MouseAdapter() {
-                                public void mouseReleased(MouseEvent e) {
-                                    if (e.isPopupTrigger()) {
-                                        // 添加当前缩略图到选中列表（如果未选中）
-                                        if (!thumb.isSelected()) {
-                                            thumb.setSelected(true);
-                                            selectedThumbs.add(thumb);
-                                        }
-                                        // 保持其他已选中的缩略图状态不变
-                                        createContextMenu(e);
-                                    }
-                                }
-                                
-                                @Override
-                                public void mouseClicked(MouseEvent e) {
-                                    if (e.getClickCount() == 2) { // 双击事件
-                                        int index = imageFiles.indexOf(file);
-                                        new SlideShowDialog(
-                                            (JFrame)SwingUtilities.getWindowAncestor(ThumbnailPanel.this),
-                                            imageFiles,
-                                            index
-                                        ).setVisible(true);
-                                    }
-                                }
-                            });
-                            
-                            // 分批发布缩略图
-                            publish(thumb);
-                            imageFiles.add(file);
-                        } catch (Exception e) {
-                            e.printStackTrace();
+                // 先按文件顺序放好占位格子，解码完成后按索引填图，保证显示顺序与文件顺序一致
+                boolean virtual = fileList.size() > VIRTUAL_THRESHOLD;
+                ThumbnailLoader.ResultHandler<BufferedImage> handler =
+                    (index, file, image) -> publish(new DecodedThumb(index, file, image));
+                // 虚拟模式只解码视口附近的格子，整个目录浏览期间任务一直存在
+                ThumbnailLoader<BufferedImage>.Job job = virtual
+                    ? loader.submitOnDemand(fileList, handler)
+                    : loader.submit(fileList, handler);
+                ownJob = job;
+                SwingUtilities.invokeAndWait(() -> {
+                    if (isCancelled()) {
+                        job.cancel();
+                        return;
+                    }
+                    setVirtualMode(virtual);
+                    viewFiles.addAll(fileList);
+                    if (virtual) {
+                        imageFiles.addAll(fileList);
+                        virtualGrid.setFiles(imageFiles);
+                    } else {
+                        addPlaceholders(fileList);
+                    }
+                    if (initialSelection != null) {
+                        selection.setSelection(initialSelection);
+                        infoUpdater.updateInfo(selectionInfo());
+                    }
+                    currentJob = job;
+                    if (scrollToIndex > 0) {
+                        SwingUtilities.invokeLater(() -> scrollToIndex(scrollToIndex));
+                    }
+                    // 布局完成后再按可见区域调整优先级
+                    SwingUtilities.invokeLater(() -> updateDecodePriority());
+                });
+                // 文件头很小，并行读完后一次性交给EDT；构建排序键时顺带统计总大小
+                ImageMetadata[] headers = ImageMetadataReader.readAll(fileList, this::isCancelled);
+                ThumbnailSorter keys = ThumbnailSorter.build(fileList, headers);
+                totalSize = keys.getTotalSize();
+                SwingUtilities.invokeLater(() -> {
+                    if (isCancelled()) return;
+                    for (int i = 0; i < headers.length; i++) {
+                        if (headers[i] != null) metadata.put(fileList.get(i), headers[i]);
+                    }
+                    setSortKeys(keys, version);
+                });
+                if (virtual) {
+                    long size = totalSize;
+                    SwingUtilities.invokeLater(() -> {
+                        if (!isCancelled()) {
+                            ThumbnailPanel.this.totalSize = size;
+                            updateInfo(size);
                         }
+                    });
+                }
+                try {
+                    if (virtual) {
+                        job.awaitCancel();
+                    } else {
+                        job.await();
                     }
+                } finally {
+                    if (isCancelled()) job.cancel();
                 }
                 return null;
             }
 
             @Override
-            protected void process(List<Thumbnail> chunks) {
+            protected void process(List<DecodedThumb> chunks) {
                 if (isCancelled()) return;
-                
-                // 增量更新而不是清除全部
-                for (Thumbnail thumb : chunks) {
-                    add(thumb);
-                }
-                // 优化刷新频率，每批更新后只刷新一次
-                if (!chunks.isEmpty()) {
-                    revalidate();
-                    repaint();
+
+                // 每批只填充对应格子的图片，格子本身已经在布局中
+                for (DecodedThumb decoded : chunks) {
+                    showDecoded(decoded);
                 }
             }
 
             @Override
             protected void done() {
-                if (!isCancelled()) {
-                    updateInfo(dir);
-                    // 确保最终刷新界面
+                // 任务可能已被目录增量刷新替换，此时信息由刷新负责更新
+                if (!isCancelled() && currentJob == ownJob) {
+                    currentJob = null;
+                    ThumbnailPanel.this.totalSize = totalSize;
+                    updateInfo(totalSize);
                     // 最终刷新界面
                     revalidate();
                     repaint();
                 }
             }
-            
-            private List<Thumbnail> getThumbnails() {
-                List<Thumbnail> thumbs = new ArrayList<>();
-                for (Component comp : getComponents()) {
-                    if (comp instanceof Thumbnail) {
-                        thumbs.add((Thumbnail) comp);
+        };
+
+        currentWorker.execute();
+    }
+
+    // 填入解码结果；目录可能已增量变化，索引对不上时按文件重新查找
+    private void showDecoded(DecodedThumb decoded) {
+        int index = decoded.index;
+        if (index < 0 || index >= imageFiles.size() || !imageFiles.get(index).equals(decoded.file)) {
+            index = imageFiles.indexOf(decoded.file);
+            if (index < 0) {
+                // 被筛选隐藏的格子照样填图，取消筛选后直接显示
+                Thumbnail hidden = hiddenThumbs.get(decoded.file);
+                if (hidden != null) setThumbnailImage(hidden, decoded.image);
+                return;
+            }
+        }
+        if (decoded.image != null) {
+            StartupMetrics.firstThumbnail();
+        }
+        if (virtualMode) {
+            virtualGrid.setImage(index, decoded.image);
+            return;
+        }
+        if (index >= getComponentCount()) return;
+        setThumbnailImage((Thumbnail) getComponent(index), decoded.image);
+    }
+
+    private static void setThumbnailImage(Thumbnail thumb, BufferedImage image) {
+        if (image != null) {
+            thumb.setIcon(new ImageIcon(image));
+        } else {
+            thumb.setLoadFailed();
+        }
+    }
+
+    private DirectoryWatcher createWatcher() {
+        try {
+            return new DirectoryWatcher(f -> isImageFile(f), (dir, changed, deleted, overflow) -> {
+                if (!dir.equals(currentDirectory)) return;
+                if (overflow) {
+                    // 事件丢失，只能完整重新加载
+                    loadImages(currentDirectory, getFirstVisibleIndex());
+                } else {
+                    applyChanges(changed, deleted);
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 把目录中的变化直接应用到现有网格：删除的文件移除格子，新文件追加到末尾，
+     * 内容改变的文件重新解码，其余格子和已解码的图片保持不变。
+     * 重复应用同一变化没有副作用，因此自身的删除、粘贴操作可以立即调用，之后监视到的事件会被忽略。
+     */
+    private void applyChanges(List<File> changed, List<File> deleted) {
+        if (currentWorker == null) return;
+        java.util.Map<File, Integer> positions = new java.util.HashMap<>();
+        for (int i = 0; i < imageFiles.size(); i++) {
+            positions.put(imageFiles.get(i), i);
+        }
+
+        // 被筛选隐藏的文件同样要跟随变化
+        java.util.Set<File> hidden = new java.util.HashSet<>();
+        if (viewFiles.size() != imageFiles.size()) {
+            for (File file : viewFiles) {
+                if (!positions.containsKey(file)) hidden.add(file);
+            }
+        }
+
+        java.util.BitSet removed = new java.util.BitSet();
+        java.util.Set<File> gone = new java.util.HashSet<>();
+        for (File file : deleted) {
+            Integer index = positions.get(file);
+            if (index != null) {
+                removed.set(index);
+                gone.add(file);
+            } else if (hidden.contains(file)) {
+                hiddenThumbs.remove(file);
+                gone.add(file);
+            }
+            metadata.remove(file);
+        }
+        List<File> appended = new ArrayList<>();
+        List<File> modified = new ArrayList<>();
+        List<File> hiddenModified = new ArrayList<>();
+        for (File file : changed) {
+            if (positions.containsKey(file)) {
+                modified.add(file);
+            } else if (hidden.contains(file)) {
+                hiddenModified.add(file);
+            } else if (!appended.contains(file)) {
+                appended.add(file);
+            }
+            // 由refreshInfo重新读取
+            metadata.remove(file);
+        }
+        if (gone.isEmpty() && appended.isEmpty() && modified.isEmpty() && hiddenModified.isEmpty()) return;
+        viewFiles.removeIf(gone::contains);
+        viewFiles.addAll(appended);
+        viewVersion++;
+
+        if (!removed.isEmpty()) {
+            removeIndices(removed);
+        }
+        if (!appended.isEmpty()) {
+            if (virtualMode) {
+                imageFiles.addAll(appended);
+                virtualGrid.filesAppended();
+            } else {
+                addPlaceholders(appended);
+            }
+        }
+
+        if (virtualMode) {
+            // 按需解码的任务以索引为准，列表变化后换成新任务，已解码的格子保留
+            for (File file : modified) {
+                virtualGrid.invalidateImage(imageFiles.indexOf(file));
+            }
+            resubmitJob();
+        } else {
+            List<File> toDecode = new ArrayList<>(modified);
+            toDecode.addAll(hiddenModified);
+            toDecode.addAll(appended);
+            if (!toDecode.isEmpty()) {
+                refreshJobs.removeIf(ThumbnailLoader.Job::isDone);
+                refreshJobs.add(loader.submit(toDecode,
+                    (index, file, image) -> SwingUtilities.invokeLater(() -> showDecoded(new DecodedThumb(-1, file, image)))));
+            }
+        }
+        refreshInfo();
+    }
+
+    private void removeIndices(java.util.BitSet removed) {
+        int first = removed.nextSetBit(0);
+        List<File> remaining = new ArrayList<>(imageFiles.size() - removed.cardinality());
+        for (int i = 0; i < imageFiles.size(); i++) {
+            if (!removed.get(i)) remaining.add(imageFiles.get(i));
+        }
+        imageFiles.clear();
+        imageFiles.addAll(remaining);
+        if (virtualMode) {
+            virtualGrid.filesRemoved(removed);
+        } else {
+            for (int i = removed.previousSetBit(getComponentCount() - 1); i >= 0; i = removed.previousSetBit(i - 1)) {
+                remove(i);
+            }
+            for (int i = first; i < getComponentCount(); i++) {
+                ((Thumbnail) getComponent(i)).setIndex(i);
+            }
+            revalidate();
+            repaint();
+        }
+        selection.removeIndices(removed);
+    }
+
+    // 目录变化后在后台补读新增或修改文件的文件头、重建排序键并统计总大小，完成后按当前排序重新排列
+    private void refreshInfo() {
+        int id = viewId;
+        int version = viewVersion;
+        List<File> files = new ArrayList<>(viewFiles);
+        ImageMetadata[] headers = new ImageMetadata[files.size()];
+        List<File> unread = new ArrayList<>();
+        List<Integer> unreadIndices = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            headers[i] = metadata.get(files.get(i));
+            if (headers[i] == null) {
+                unread.add(files.get(i));
+                unreadIndices.add(i);
+            }
+        }
+        new SwingWorker<ThumbnailSorter, Void>() {
+            @Override
+            protected ThumbnailSorter doInBackground() throws InterruptedException {
+                ImageMetadata[] read = ImageMetadataReader.readAll(unread, () -> id != viewId);
+                for (int k = 0; k < read.length; k++) {
+                    headers[unreadIndices.get(k)] = read[k];
+                }
+                return ThumbnailSorter.build(files, headers);
+            }
+
+            @Override
+            protected void done() {
+                if (id != viewId) return;
+                try {
+                    ThumbnailSorter keys = get();
+                    for (int i : unreadIndices) {
+                        if (headers[i] != null) metadata.put(files.get(i), headers[i]);
                     }
+                    totalSize = keys.getTotalSize();
+                    setSortKeys(keys, version);
+                    updateInfo(totalSize);
+                } catch (Exception e) {
+                    e.printStackTrace();
                 }
-                return thumbs;
             }
-        };
-        
-        currentWorker.execute();
+        }.execute();
+    }
+
+    // 排序键就绪；构建期间视图又有变化时丢弃，等refreshInfo重新构建
+    private void setSortKeys(ThumbnailSorter keys, int version) {
+        if (version != viewVersion) return;
+        sortKeys = keys;
+        keysVersion = version;
+        applyOrder();
+    }
+
+    /**
+     * 设置排序方式，只重新排列已有的格子，不重新加载或解码。
+     */
+    public void setSortMode(ThumbnailSorter.SortMode mode, boolean descending) {
+        sortMode = mode;
+        sortDescending = descending;
+        applyOrder();
+    }
+
+    public ThumbnailSorter.Filter getFilter() {
+        return filter;
+    }
+
+    /**
+     * 设置筛选条件，不符合的格子隐藏起来，已解码的缩略图保留。分组视图中不生效，切换到普通视图后才应用。
+     */
+    public void setFilter(ThumbnailSorter.Filter filter) {
+        this.filter = filter;
+        applyOrder();
+    }
+
+    /**
+     * 当前视图中出现的扩展名，排序键尚未就绪时为空。
+     */
+    public String[] getExtensions() {
+        return sortKeys == null ? new String[0] : sortKeys.getExtensions();
+    }
+
+    /**
+     * 按当前排序方式和筛选条件重新排列格子。只使用预计算的排序键，不访问磁盘；
+     * 格子和已解码的图片原样移动，选择状态跟随文件。排序键还没有就绪时什么也不做，就绪后会再调用。
+     */
+    private void applyOrder() {
+        if (sortKeys == null || keysVersion != viewVersion) return;
+        List<File> keyFiles = sortKeys.getFiles();
+        int[] order;
+        if (viewGroups != null) {
+            int[] groups = new int[keyFiles.size()];
+            for (int i = 0; i < groups.length; i++) {
+                groups[i] = viewGroups.getOrDefault(keyFiles.get(i), -1);
+            }
+            order = sortKeys.orderInGroups(sortMode, sortDescending, groups);
+        } else {
+            order = sortKeys.order(sortMode, sortDescending, filter);
+        }
+        List<File> ordered = new ArrayList<>(order.length);
+        for (int i : order) {
+            ordered.add(keyFiles.get(i));
+        }
+        if (ordered.equals(imageFiles)) return;
+
+        java.util.Map<File, Integer> oldPositions = new java.util.HashMap<>(imageFiles.size() * 2);
+        for (int i = 0; i < imageFiles.size(); i++) {
+            oldPositions.put(imageFiles.get(i), i);
+        }
+        int[] from = new int[ordered.size()];
+        java.util.BitSet selected = new java.util.BitSet();
+        for (int k = 0; k < from.length; k++) {
+            Integer old = oldPositions.get(ordered.get(k));
+            from[k] = old == null ? -1 : old;
+            if (old != null && selection.isSelected(old)) selected.set(k);
+        }
+        selection.reset();
+        imageFiles.clear();
+        imageFiles.addAll(ordered);
+        if (virtualMode) {
+            virtualGrid.reorder(from);
+        } else {
+            java.util.Map<File, Thumbnail> thumbs = new java.util.HashMap<>(hiddenThumbs);
+            for (Component comp : getComponents()) {
+                thumbs.put(((Thumbnail) comp).getFile(), (Thumbnail) comp);
+            }
+            removeAll();
+            for (int k = 0; k < ordered.size(); k++) {
+                Thumbnail thumb = thumbs.remove(ordered.get(k));
+                if (thumb == null) thumb = createThumbnail(ordered.get(k));
+                thumb.setIndex(k);
+                add(thumb);
+            }
+            hiddenThumbs.clear();
+            hiddenThumbs.putAll(thumbs);
+            wrapLayout.invalidateAll();
+            revalidate();
+            repaint();
+        }
+        selection.setSelection(selected);
+        resubmitJob();
+        updateInfo(totalSize);
+    }
+
+    // 文件列表顺序变化后换成新任务，已有结果的格子跳过，只解码还没加载的
+    private void resubmitJob() {
+        if (currentJob != null) currentJob.cancel();
+        java.util.BitSet loaded;
+        if (virtualMode) {
+            loaded = virtualGrid.getLoaded();
+        } else {
+            loaded = new java.util.BitSet();
+            for (int i = 0; i < getComponentCount(); i++) {
+                if (((Thumbnail) getComponent(i)).isLoaded()) loaded.set(i);
+            }
+        }
+        currentJob = loader.submitOnDemand(new ArrayList<>(imageFiles),
+            (index, file, image) -> SwingUtilities.invokeLater(() -> showDecoded(new DecodedThumb(index, file, image))));
+        currentJob.skip(loaded);
+        if (!virtualMode) {
+            currentJob.request(0, imageFiles.size());
+        }
+        updateDecodePriority();
+    }
+
+    // 在EDT上为每个文件创建占位缩略图并绑定事件
+    private void addPlaceholders(List<File> files) {
+        for (File file : files) {
+            Thumbnail thumb = createThumbnail(file);
+            thumb.setIndex(getComponentCount());
+            add(thumb);
+            imageFiles.add(file);
+        }
+        revalidate();
+        repaint();
+    }
+
+    private Thumbnail createThumbnail(File file) {
+        Thumbnail thumb = new Thumbnail(null, file);
+        // 添加事件监听器
+        thumb.addMouseListener(new ThumbnailClickListener());
+        thumb.addMouseListener(new MouseAdapter() {
+            public void mouseReleased(MouseEvent e) {
+                if (e.isPopupTrigger()) {
+                    // 添加当前缩略图到选中列表（如果未选中）
+                    selection.setSelected(thumb.getIndex(), true);
+                    // 保持其他已选中的缩略图状态不变
+                    createContextMenu(e);
+                }
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) { // 双击事件
+                    openSlideShow(thumb.getIndex());
+                }
+            }
+        });
+        return thumb;
+    }
+
+    private void openSlideShow(int index) {
+        // 目录变化时列表会被修改，幻灯片使用副本
+        new SlideShowDialog(
+            (JFrame)SwingUtilities.getWindowAncestor(ThumbnailPanel.this),
+            new ArrayList<>(imageFiles),
+            index
+        ).setVisible(true);
+    }
+
+    // 切换组件网格与虚拟网格
+    private void setVirtualMode(boolean virtual) {
+        if (virtual == virtualMode) return;
+        virtualMode = virtual;
+        removeAll();
+        if (virtual) {
+            setLayout(new BorderLayout());
+            add(virtualGrid, BorderLayout.CENTER);
+        } else {
+            wrapLayout.invalidateAll();
+            setLayout(wrapLayout);
+        }
+        revalidate();
+        repaint();
+    }
+
+    // 在解码线程中执行：依次查内存缓存、磁盘缓存，都未命中再解码并写回缓存
+    private BufferedImage decodeThumbnail(File file) {
+        try {
+            ThumbnailKey key = ThumbnailKey.of(file);
+            ThumbnailMemoryCache memoryCache = ThumbnailMemoryCache.getDefault();
+            BufferedImage image = memoryCache.get(key);
+            if (image != null) return image;
+
+            ThumbnailDiskCache diskCache = ThumbnailDiskCache.getDefault();
+            if (diskCache != null) {
+                image = diskCache.get(key);
+            }
+            if (image == null) {
+                image = ThumbnailDecoder.decode(file, THUMB_SIZE);
+                if (image != null && diskCache != null) {
+                    diskCache.put(key, image);
+                }
+            }
+            if (image != null) {
+                memoryCache.put(key, image);
+            }
+            return image;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private final javax.swing.event.ChangeListener viewportListener = e -> updateDecodePriority();
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        // 滚动时重新调整解码优先级，让可见区域先出图
+        if (getParent() instanceof JViewport) {
+            ((JViewport) getParent()).addChangeListener(viewportListener);
+        }
+    }
+
+    @Override
+    public void removeNotify() {
+        if (getParent() instanceof JViewport) {
+            ((JViewport) getParent()).removeChangeListener(viewportListener);
+        }
+        super.removeNotify();
+    }
+
+    private void updateDecodePriority() {
+        if (currentJob == null) return;
+        if (!virtualMode) {
+            currentJob.prioritize(firstVisibleIndex());
+            return;
+        }
+        // 虚拟模式：请求视口及前后预取区内的格子，释放保留区之外的图片
+        int[] visible = virtualGrid.visibleRange();
+        int screen = Math.max(virtualGrid.getColumns(), visible[1] - visible[0]);
+        virtualGrid.releaseOutside(visible[0] - screen * RETAIN_SCREENS,
+            visible[1] + screen * RETAIN_SCREENS, currentJob::forget);
+        currentJob.request(visible[0], visible[1] + screen * PREFETCH_SCREENS);
+        currentJob.request(visible[0] - screen * PREFETCH_SCREENS, visible[0]);
+        currentJob.prioritize(visible[0]);
+    }
+
+    /**
+     * 视口中第一个可见格子的索引，用于保存会话。
+     */
+    public int getFirstVisibleIndex() {
+        if (virtualMode) return virtualGrid.visibleRange()[0];
+        return getComponentCount() == 0 ? 0 : firstVisibleIndex();
+    }
+
+    private void scrollToIndex(int index) {
+        if (!(getParent() instanceof JViewport) || index >= imageFiles.size()) return;
+        JViewport viewport = (JViewport) getParent();
+        viewport.validate();
+        Rectangle cell = virtualMode ? virtualGrid.cellBounds(index) : getComponent(index).getBounds();
+        int maxY = Math.max(0, viewport.getViewSize().height - viewport.getExtentSize().height);
+        viewport.setViewPosition(new Point(0, Math.min(maxY, Math.max(0, cell.y - wrapLayout.getVgap()))));
+    }
+
+    // 格子按行排列，y坐标单调不减，二分查找第一个与可见区域相交的格子
+    private int firstVisibleIndex() {
+        Rectangle visible = getVisibleRect();
+        int lo = 0;
+        int hi = getComponentCount() - 1;
+        int result = 0;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            Component comp = getComponent(mid);
+            if (comp.getY() + comp.getHeight() > visible.y) {
+                result = mid;
+                hi = mid - 1;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return result;
+    }
+
+    private static class DecodedThumb {
+        final int index;
+        final File file;
+        final BufferedImage image;
+
+        DecodedThumb(int index, File file, BufferedImage image) {
+            this.index = index;
+            this.file = file;
+            this.image = image;
+        }
     }
 
     private boolean addThumbnail(File file) {
@@ -184,12 +849,57 @@ public class ThumbnailPanel extends JPanel {
         return false;
     }
 
-    private void updateInfo(File dir) {
-        long totalSize = imageFiles.stream().mapToLong(File::length).sum();
-        String info = String.format("目录: %s | 图片数: %d | 总大小: %.2f MB",
-                dir.getName(), imageFiles.size(), totalSize / (1024.0 * 1024));
+    private void updateInfo(long totalSize) {
+        String count = imageFiles.size() == viewFiles.size() ? String.valueOf(imageFiles.size())
+            : imageFiles.size() + "/" + viewFiles.size() + "（已筛选）";
+        String info = String.format("%s | 图片数: %s | 总大小: %.2f MB",
+                viewTitle, count, totalSize / (1024.0 * 1024));
+        long first = Long.MAX_VALUE;
+        long last = 0;
+        for (File file : imageFiles) {
+            ImageMetadata m = metadata.get(file);
+            if (m != null && m.getCaptureTime() > 0) {
+                first = Math.min(first, m.getCaptureTime());
+                last = Math.max(last, m.getCaptureTime());
+            }
+        }
+        if (last > 0) {
+            String from = formatDate(first);
+            String to = formatDate(last);
+            info += " | 拍摄: " + (from.equals(to) ? from : from + " ~ " + to);
+        }
+        long allocated = ThumbnailDecoder.getAverageAllocatedBytes();
+        if (allocated >= 0) {
+            info += String.format(" | 平均每张解码分配: %.1f KB", allocated / 1024.0);
+        }
         infoUpdater.updateInfo(info);
     }
+
+    // 只选中一张时附带尺寸和拍摄时间
+    private String selectionInfo() {
+        int count = selection.getSelectedCount();
+        String info = "选中: " + count + " 张图片";
+        int index = selection.nextSelected(0);
+        if (count != 1 || index < 0 || index >= imageFiles.size()) return info;
+        File file = imageFiles.get(index);
+        info += " | " + file.getName();
+        ImageMetadata m = metadata.get(file);
+        if (m != null && m.getWidth() > 0) {
+            info += " | " + m.getDisplayWidth() + "x" + m.getDisplayHeight();
+        }
+        if (m != null && m.getCaptureTime() > 0) {
+            info += " | 拍摄于 " + java.time.Instant.ofEpochMilli(m.getCaptureTime())
+                .atZone(java.time.ZoneId.systemDefault()).toLocalDateTime().format(DATE_TIME_FORMAT);
+        }
+        return info;
+    }
+
+    private static final java.time.format.DateTimeFormatter DATE_TIME_FORMAT =
+        java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static String formatDate(long millis) {
+        return java.time.Instant.ofEpochMilli(millis).atZone(java.time.ZoneId.systemDefault()).toLocalDate().toString();
+    }
     public File getCurrentDirectory() {
         return currentDirectory;
     }
@@ -198,52 +908,66 @@ public class ThumbnailPanel extends JPanel {
         return imageFiles;
     }
 
+    private List<File> getSelectedFiles() {
+        List<File> files = new ArrayList<>();
+        for (int i = selection.nextSelected(0); i >= 0 && i < imageFiles.size(); i = selection.nextSelected(i + 1)) {
+            files.add(imageFiles.get(i));
+        }
+        return files;
+    }
+
+    private int getSelectedCount() {
+        return selection.getSelectedCount();
+    }
+
+    private void selectAll() {
+        selection.selectAll(imageFiles.size());
+        infoUpdater.updateInfo(selectionInfo());
+    }
+
+    // ---- Scrollable：宽度跟随视口，网格按视口宽度换行 ----
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return (Thumbnail.CELL_SIZE + 10) / 4;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        // 内容不足一屏时铺满视口，空白处也能响应点击和右键菜单
+        return getParent() instanceof JViewport && getParent().getHeight() > getPreferredSize().height;
+    }
+
 
 
     // 缩略图点击事件处理
     private class ThumbnailClickListener extends MouseAdapter {
+        @Override
+        public void mousePressed(MouseEvent e) {
+            requestFocusInWindow();
+        }
+
         @Override
         public void mouseClicked(MouseEvent e) {
             Thumbnail thumb = (Thumbnail) e.getSource();
             if (SwingUtilities.isLeftMouseButton(e)) {
-                Component[] components = getComponents();
-                List<Thumbnail> thumbs = new ArrayList<>();
-                for (Component comp : components) {
-                    if (comp instanceof Thumbnail) {
-                        thumbs.add((Thumbnail) comp);
-                    }
-                }
-                int currentIndex = thumbs.indexOf(thumb);
-
-                if (e.isControlDown()) {
-                    // Ctrl+点击：切换选中状态
-                    thumb.toggleSelected();
-                    if (thumb.isSelected()) {
-                        selectedThumbs.add(thumb);
-                    } else {
-                        selectedThumbs.remove(thumb);
-                    }
-                } else if (e.isShiftDown() && lastSelectedIndex != -1) {
-                    // Shift+点击：范围选择
-                    int start = Math.min(lastSelectedIndex, currentIndex);
-                    int end = Math.max(lastSelectedIndex, currentIndex);
-                    for (int i = start; i <= end; i++) {
-                        Thumbnail t = thumbs.get(i);
-                        t.setSelected(true);
-                        if (!selectedThumbs.contains(t)) {
-                            selectedThumbs.add(t);
-                        }
-                    }
-                } else {
-                    // 普通点击：单选模式
-                    selectedThumbs.forEach(t -> t.setSelected(false));
-                    selectedThumbs.clear();
-                    thumb.setSelected(true);
-                    selectedThumbs.add(thumb);
-                    lastSelectedIndex = currentIndex; // 记录最后选中索引
-                }
-
-                infoUpdater.updateInfo("选中: " + selectedThumbs.size() + " 张图片");
+                selection.click(thumb.getIndex(), e.isControlDown(), e.isShiftDown());
+                infoUpdater.updateInfo(selectionInfo());
             }
         }
     }
@@ -262,20 +986,10 @@ public class ThumbnailPanel extends JPanel {
             if (startPoint != null) {
                 Rectangle rect = new Rectangle(startPoint);
                 rect.add(e.getPoint());
-                for (Component comp : getComponents()) {
-                    if (comp instanceof Thumbnail) {
-                        Thumbnail thumb = (Thumbnail) comp;
-                        boolean selected = thumb.getBounds().intersects(rect);
-                        thumb.setSelected(selected);
-                        if (selected && !selectedThumbs.contains(thumb)) {
-                            selectedThumbs.add(thumb);
-                        } else if (!selected) {
-                            selectedThumbs.remove(thumb);
-                        }
-                    }
-                }
-                infoUpdater.updateInfo("选中: " + selectedThumbs.size() + " 张图片");
-                repaint();
+                java.util.BitSet hit = new java.util.BitSet();
+                wrapLayout.collectIntersecting(ThumbnailPanel.this, rect, hit);
+                selection.setSelection(hit);
+                infoUpdater.updateInfo(selectionInfo());
             }
         }
     }
@@ -289,23 +1003,54 @@ public class ThumbnailPanel extends JPanel {
         
         // 复制菜单项
         JMenuItem copyItem = new JMenuItem("复制");
-        copyItem.setEnabled(!selectedThumbs.isEmpty());
+        copyItem.setEnabled(getSelectedCount() > 0);
         copyItem.addActionListener(evt -> copySelectedFiles());
         menu.add(copyItem);
 
+        // 剪切菜单项
+        JMenuItem cutItem = new JMenuItem("剪切");
+        cutItem.setEnabled(getSelectedCount() > 0);
+        cutItem.addActionListener(evt -> cutSelectedFiles());
+        menu.add(cutItem);
+
         // 粘贴菜单项
-        JMenuItem pasteItem = new JMenuItem("粘贴");
-        pasteItem.addActionListener(evt -> pasteFiles());
-        menu.add(pasteItem);
+        if (activePaste != null) {
+            JMenuItem cancelItem = new JMenuItem("取消粘贴");
+            cancelItem.addActionListener(evt -> cancelPaste());
+            menu.add(cancelItem);
+        } else {
+            JMenuItem pasteItem = new JMenuItem("粘贴");
+            pasteItem.addActionListener(evt -> pasteFiles());
+            menu.add(pasteItem);
+        }
+
+        // 查找相似图片菜单项
+        JMenuItem similarItem = new JMenuItem("查找相似图片");
+        similarItem.setEnabled(imageFiles.size() > 1 && activeFinder == null);
+        similarItem.addActionListener(evt -> findSimilarImages());
+        menu.add(similarItem);
+
+        // 全选菜单项
+        JMenuItem selectAllItem = new JMenuItem("全选");
+        selectAllItem.setEnabled(!imageFiles.isEmpty());
+        selectAllItem.addActionListener(evt -> selectAll());
+        menu.add(selectAllItem);
 
         // 删除菜单项
         JMenuItem delItem = new JMenuItem("删除");
+        delItem.setEnabled(getSelectedCount() > 0 && activeDeleter == null);
         delItem.addActionListener(evt -> delSelectedFiles());
         menu.add(delItem);
 
+        if (lastDelete != null) {
+            JMenuItem undoItem = new JMenuItem("撤销删除");
+            undoItem.addActionListener(evt -> undoDelete());
+            menu.add(undoItem);
+        }
+
         // 重命名菜单项
         JMenuItem renameItem = new JMenuItem("重命名");
-        renameItem.setEnabled(selectedThumbs.size() == 1);
+        renameItem.setEnabled(getSelectedCount() == 1);
         renameItem.addActionListener(evt -> renameSelectedFile());
         menu.add(renameItem);
 
@@ -313,10 +1058,19 @@ public class ThumbnailPanel extends JPanel {
     }
 
     private void copySelectedFiles() {
-        List<File> filesToCopy = new ArrayList<>();
-        for (Thumbnail thumb : selectedThumbs) {
-            filesToCopy.add(thumb.getFile());
-        }
+        putOnClipboard(false);
+    }
+
+    private void cutSelectedFiles() {
+        putOnClipboard(true);
+    }
+
+    /**
+     * 把选中文件放入剪贴板。剪切时额外记住这批文件，粘贴时如果剪贴板内容仍是它们就移动而不是复制；
+     * 剪贴板被其他内容替换后剪切状态随之失效。
+     */
+    private void putOnClipboard(boolean cut) {
+        List<File> filesToCopy = getSelectedFiles();
         if (!filesToCopy.isEmpty()) {
             clipboard.setContents(new java.awt.datatransfer.Transferable() {
                 public DataFlavor[] getTransferDataFlavors() {
@@ -334,72 +1088,275 @@ public class ThumbnailPanel extends JPanel {
                     }
                     return filesToCopy;
                 }
-            }, null);
-            infoUpdater.updateInfo("已复制 " + filesToCopy.size() + " 个文件");
+            }, (cb, contents) -> SwingUtilities.invokeLater(() -> {
+                if (cutFiles == filesToCopy) cutFiles = null;
+            }));
+            cutFiles = cut ? filesToCopy : null;
+            infoUpdater.updateInfo((cut ? "已剪切 " : "已复制 ") + filesToCopy.size() + " 个文件");
         }
     }
     private void delSelectedFiles() {
-        List<File> filesToDelete = new ArrayList<>();
-        for (Thumbnail thumb : selectedThumbs) {
-            filesToDelete.add(thumb.getFile());
+        List<File> filesToDelete = getSelectedFiles();
+        if (filesToDelete.isEmpty()) return;
+        if (activeDeleter != null) {
+            infoUpdater.updateInfo("正在删除，请稍候或按Esc取消");
+            return;
         }
-        if (!filesToDelete.isEmpty()) {
-            for (File file : filesToDelete) {
-                file.delete();
+        int id = viewId;
+        FileDeleter previous = lastDelete;
+        lastDelete = null;
+        FileDeleter deleter = new FileDeleter(filesToDelete, UNDOABLE_DELETE,
+            (finished, total) -> SwingUtilities.invokeLater(() -> {
+                if (activeDeleter != null) {
+                    infoUpdater.updateInfo("删除中: " + finished + "/" + total + "（Esc取消）");
+                }
+            }));
+        activeDeleter = deleter;
+        new SwingWorker<List<File>, Void>() {
+            private java.util.Map<File, IOException> failures = java.util.Map.of();
+
+            protected List<File> doInBackground() {
+                // 上一批暂存的文件不能再撤销，先真正删除
+                if (previous != null) {
+                    failures = previous.purge();
+                }
+                return deleter.run();
             }
-        }
-        loadImages(currentDirectory);
-        infoUpdater.updateInfo("删除完成");
 
+            protected void done() {
+                activeDeleter = null;
+                try {
+                    List<File> deleted = get();
+                    // 只移除对应的格子，不重新加载整个目录
+                    if (id == viewId) {
+                        applyChanges(List.of(), deleted);
+                    }
+                    if (deleter.isStaged() && !deleted.isEmpty()) {
+                        lastDelete = deleter;
+                    }
+                    String info = (deleter.isCancelled() ? "删除已取消，已删除 " : "删除完成，已删除 ") + deleted.size() + " 个文件";
+                    if (lastDelete == deleter) {
+                        info += "（Ctrl+Z撤销）";
+                    }
+                    infoUpdater.updateInfo(info);
+                    if (!failures.isEmpty() || !deleter.getFailures().isEmpty()) {
+                        java.util.Map<File, IOException> all = new java.util.LinkedHashMap<>(failures);
+                        all.putAll(deleter.getFailures());
+                        showFailures(all, "删除失败");
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    infoUpdater.updateInfo("删除失败: " + e.getMessage());
+                }
+            }
+        }.execute();
     }
 
-    private void pasteFiles() {
-        new SwingWorker<Void, Void>() {
-            protected Void doInBackground() throws Exception {
+    /**
+     * 在当前显示的图片中查找相似组，结果用{@link #showGroups}按组显示。
+     */
+    private void findSimilarImages() {
+        DuplicateFinder finder = new DuplicateFinder(imageFiles,
+            (hashed, total) -> SwingUtilities.invokeLater(() -> {
+                if (activeFinder != null) {
+                    infoUpdater.updateInfo("计算图片指纹: " + hashed + "/" + total + "（Esc取消）");
+                }
+            }));
+        activeFinder = finder;
+        new SwingWorker<List<List<File>>, Void>() {
+            protected List<List<File>> doInBackground() throws Exception {
+                return finder.run();
+            }
+
+            protected void done() {
+                activeFinder = null;
                 try {
-                    if (!clipboard.isDataFlavorAvailable(java.awt.datatransfer.DataFlavor.javaFileListFlavor)) {
-                        return null;
+                    List<List<File>> groups = get();
+                    if (groups == null) {
+                        infoUpdater.updateInfo("已取消查找相似图片");
+                        return;
                     }
-                    
-                    java.util.List<?> fileList = (java.util.List<?>) clipboard.getData(java.awt.datatransfer.DataFlavor.javaFileListFlavor);
-                    java.util.List<File> files = new ArrayList<>();
-                    for (Object obj : fileList) {
-                        if (obj instanceof File) {
-                            files.add((File)obj);
-                        }
+                    if (groups.isEmpty()) {
+                        infoUpdater.updateInfo("没有找到相似图片");
+                        return;
                     }
-                    for (File srcFile : files) {
-                        if (srcFile.isFile() && isImageFile(srcFile)) {
-                            File destFile = getUniqueFileName(srcFile.getName());
-                            Files.copy(srcFile.toPath(), destFile.toPath());
-                        }
+                    showGroups("相似图片: " + groups.size() + " 组（每组一张以外已选中）", groups);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    infoUpdater.updateInfo("查找相似图片失败: " + e.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    private void cancelDelete() {
+        if (activeDeleter != null) {
+            activeDeleter.cancel();
+        }
+    }
+
+    // 列出每个失败的文件和原因，action为标题中的动作，如"删除失败"
+    private void showFailures(java.util.Map<File, IOException> failures, String action) {
+        StringBuilder text = new StringBuilder();
+        for (java.util.Map.Entry<File, IOException> entry : failures.entrySet()) {
+            text.append(entry.getKey().getName()).append(": ").append(entry.getValue()).append('\n');
+        }
+        JTextArea area = new JTextArea(text.toString(), Math.min(failures.size(), 15), 50);
+        area.setEditable(false);
+        JOptionPane.showMessageDialog(this, new JScrollPane(area),
+            failures.size() + " 个文件" + action, JOptionPane.WARNING_MESSAGE);
+    }
+
+    /**
+     * 撤销最近一次删除，文件恢复后追加到网格末尾。
+     */
+    private void undoDelete() {
+        FileDeleter deleter = lastDelete;
+        if (deleter == null || activeDeleter != null) return;
+        lastDelete = null;
+        File dir = currentDirectory;
+        new SwingWorker<List<File>, Void>() {
+            private final java.util.Map<File, IOException> failures = new java.util.LinkedHashMap<>();
+
+            protected List<File> doInBackground() {
+                return deleter.undo(failures);
+            }
+
+            protected void done() {
+                try {
+                    List<File> restored = get();
+                    if (dir != null && dir.equals(currentDirectory)) {
+                        applyChanges(restored, List.of());
+                    }
+                    infoUpdater.updateInfo("已恢复 " + restored.size() + " 个文件");
+                    if (!failures.isEmpty()) {
+                        // 未恢复的文件仍在暂存目录中，原因里带有路径
+                        showFailures(failures, "无法恢复");
                     }
-                    return null;
                 } catch (Exception e) {
-                    infoUpdater.updateInfo("粘贴失败: " + e.getMessage());
-                    return null;
+                    e.printStackTrace();
                 }
             }
+        }.execute();
+    }
+
+    /**
+     * 退出时调用：停止正在进行的删除，把还在暂存目录中的批次（包括被中止的这一批）记下来，
+     * 下次启动时在后台删除，不在EDT上逐个删除文件。
+     */
+    public void purgeDeleted() {
+        java.util.Set<File> pending = new java.util.LinkedHashSet<>();
+        if (activeDeleter != null) {
+            activeDeleter.cancel();
+            pending.addAll(activeDeleter.getStagingDirs());
+        }
+        if (lastDelete != null) {
+            pending.addAll(lastDelete.getStagingDirs());
+            lastDelete = null;
+        }
+        FileDeleter.savePending(pending);
+    }
+
+    private void pasteFiles() {
+        if (activePaste != null) {
+            infoUpdater.updateInfo("正在粘贴，请稍候或按Esc取消");
+            return;
+        }
+        File dir = currentDirectory;
+        if (dir == null) {
+            infoUpdater.updateInfo("请先在目录树中选择要粘贴到的目录");
+            return;
+        }
+        List<File> cut = cutFiles;
+        // 复制器要在后台读完剪贴板才能创建，之前的取消请求先记在cancelRequested中，创建后再转交
+        java.util.concurrent.atomic.AtomicReference<FileCopier> copierRef = new java.util.concurrent.atomic.AtomicReference<>();
+        java.util.concurrent.atomic.AtomicBoolean cancelRequested = new java.util.concurrent.atomic.AtomicBoolean();
+        Runnable canceller = () -> {
+            cancelRequested.set(true);
+            FileCopier c = copierRef.get();
+            if (c != null) c.cancel();
+        };
+        activePaste = canceller;
+        new SwingWorker<List<File>, long[]>() {
+            private boolean move;
+            private final long startTime = System.nanoTime();
+
+            protected List<File> doInBackground() throws Exception {
+                if (!clipboard.isDataFlavorAvailable(java.awt.datatransfer.DataFlavor.javaFileListFlavor)) {
+                    return List.of();
+                }
+
+                java.util.List<?> fileList = (java.util.List<?>) clipboard.getData(java.awt.datatransfer.DataFlavor.javaFileListFlavor);
+                move = cut != null && cut.equals(fileList);
+                java.util.List<File> files = new ArrayList<>();
+                for (Object obj : fileList) {
+                    if (obj instanceof File && ((File) obj).isFile() && isImageFile((File) obj)) {
+                        files.add((File) obj);
+                    }
+                }
+                FileCopier c = new FileCopier(files, dir, move,
+                    (copied, total, finished, count) -> publish(new long[] {copied, total, finished, count}));
+                copierRef.set(c);
+                if (cancelRequested.get()) {
+                    // 还没开始复制，run()直接回滚并返回空列表
+                    c.cancel();
+                }
+                return c.run();
+            }
+
+            @Override
+            protected void process(List<long[]> chunks) {
+                long[] last = chunks.get(chunks.size() - 1);
+                double seconds = (System.nanoTime() - startTime) / 1e9;
+                double rate = seconds > 0 ? last[0] / seconds : 0;
+                String eta = rate > 0 ? formatDuration((long) ((last[1] - last[0]) / rate)) : "--:--";
+                infoUpdater.updateInfo(String.format("粘贴中: %d/%d 个文件 | %.1f MB/s | 剩余 %s（Esc取消）",
+                    last[2], last[3], rate / (1024 * 1024), eta));
+            }
 
             protected void done() {
-                loadImages(currentDirectory);
-                infoUpdater.updateInfo("粘贴完成");
+                if (activePaste == canceller) {
+                    activePaste = null;
+                }
+                String action = move ? "移动" : "粘贴";
+                FileCopier copier = copierRef.get();
+                try {
+                    List<File> pasted = get();
+                    if (copier != null && copier.isRolledBack()) {
+                        infoUpdater.updateInfo(action + "已取消");
+                        return;
+                    }
+                    if (move && cutFiles == cut) {
+                        // 源文件已经不在原处，剪切只能粘贴一次
+                        cutFiles = null;
+                    }
+                    if (dir.equals(currentDirectory)) {
+                        applyChanges(pasted, List.of());
+                    }
+                    int failed = copier == null ? 0 : copier.getFailures().size();
+                    infoUpdater.updateInfo(failed == 0 ? action + "完成"
+                        : action + "完成，" + failed + " 个文件失败: " + copier.getFailures().get(0).getMessage());
+                } catch (Exception e) {
+                    infoUpdater.updateInfo("粘贴失败: " + e.getMessage());
+                }
             }
         }.execute();
     }
 
-    private File getUniqueFileName(String originalName) {
-        String baseName = originalName.replaceFirst("[.][^.]+$", "");
-        String extension = originalName.substring(originalName.lastIndexOf('.'));
-        int counter = 1;
-        File newFile = new File(currentDirectory, originalName);
-        
-        while (newFile.exists()) {
-            String newName = baseName + " (" + counter + ")" + extension;
-            newFile = new File(currentDirectory, newName);
-            counter++;
+    private void cancelPaste() {
+        if (activePaste != null) {
+            activePaste.run();
+            infoUpdater.updateInfo("正在取消粘贴...");
         }
-        return newFile;
+    }
+
+    private static String formatDuration(long seconds) {
+        return String.format("%d:%02d", seconds / 60, seconds % 60);
+    }
+
+    // 名字只预留不创建，调用方用完后需要FileCopier.release
+    private File getUniqueFileName(File dir, String originalName) {
+        return FileCopier.reserveName(dir, originalName);
     }
 
     private boolean isImageFile(File file) {
@@ -410,10 +1367,10 @@ public class ThumbnailPanel extends JPanel {
     }
 
     private void renameSelectedFile() {
-        if (selectedThumbs.size() != 1) return;
-        
-        Thumbnail thumb = selectedThumbs.get(0);
-        File oldFile = (File) thumb.getFile();
+        List<File> selectedFiles = getSelectedFiles();
+        if (selectedFiles.size() != 1) return;
+
+        File oldFile = selectedFiles.get(0);
         
         String newName = JOptionPane.showInputDialog(
             this, 
@@ -441,15 +1398,21 @@ public class ThumbnailPanel extends JPanel {
 
         String finalNewName = newName;
         new SwingWorker<Boolean, Void>() {
+            private File newFile;
+
             protected Boolean doInBackground() throws Exception {
-                File newFile = getUniqueFileName(finalNewName);
-                return oldFile.renameTo(newFile);
+                newFile = getUniqueFileName(oldFile.getParentFile(), finalNewName);
+                try {
+                    return oldFile.renameTo(newFile);
+                } finally {
+                    FileCopier.release(newFile);
+                }
             }
             
             protected void done() {
                 try {
                     if (get()) {
-                        loadImages(currentDirectory);
+                        applyRename(oldFile, newFile);
                         infoUpdater.updateInfo("重命名成功");
                     } else {
                         infoUpdater.updateInfo("重命名失败");
@@ -461,6 +1424,31 @@ public class ThumbnailPanel extends JPanel {
         }.execute();
     }
 
+    // 重命名后格子位置和已显示的缩略图不变，只替换文件
+    private void applyRename(File oldFile, File newFile) {
+        int index = imageFiles.indexOf(oldFile);
+        if (index < 0) return;
+        if (!isImageFile(newFile)) {
+            applyChanges(List.of(), List.of(oldFile));
+            return;
+        }
+        imageFiles.set(index, newFile);
+        viewFiles.set(viewFiles.indexOf(oldFile), newFile);
+        viewVersion++;
+        ImageMetadata m = metadata.remove(oldFile);
+        if (m != null) metadata.put(newFile, m);
+        if (viewGroups != null && viewGroups.containsKey(oldFile)) {
+            viewGroups.put(newFile, viewGroups.remove(oldFile));
+        }
+        if (virtualMode) {
+            virtualGrid.repaint(virtualGrid.cellBounds(index));
+        } else {
+            ((Thumbnail) getComponent(index)).setFile(newFile);
+        }
+        // 名称排序的名次变了，重建排序键；之前的键已随viewVersion失效
+        refreshInfo();
+    }
+
     private String getFileExtension(String filename) {
         int dotIndex = filename.lastIndexOf('.');
         if (dotIndex > 0 && dotIndex < filename.length() - 1) {
@@ -0,0 +1,150 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * 按索引记录的缩略图选择状态，基于BitSet：成员判断O(1)，区间设置/清除按字批量处理。
+ * 变化事件只携带受影响的索引区间，视图据此只重绘对应格子。
+ */
+public class ThumbnailSelectionModel {
+    private final BitSet selected = new BitSet();
+    private final List<Listener> listeners = new ArrayList<>();
+    // Shift范围选择的起点
+    private int anchorIndex = -1;
+
+    public interface Listener {
+        /** [firstIndex, lastIndex] 闭区间内的选中状态可能已改变 */
+        void selectionChanged(int firstIndex, int lastIndex);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public boolean isSelected(int index) {
+        return selected.get(index);
+    }
+
+    public boolean isEmpty() {
+        return selected.isEmpty();
+    }
+
+    public int getSelectedCount() {
+        return selected.cardinality();
+    }
+
+    public int getAnchorIndex() {
+        return anchorIndex;
+    }
+
+    /**
+     * 依次返回选中的索引，没有更多时返回-1，用法同 {@link BitSet#nextSetBit}。
+     */
+    public int nextSelected(int fromIndex) {
+        return selected.nextSetBit(fromIndex);
+    }
+
+    public void setSelected(int index, boolean value) {
+        if (selected.get(index) == value) return;
+        selected.set(index, value);
+        fire(index, index);
+    }
+
+    /**
+     * 设置 [from, to) 区间的选中状态。
+     */
+    public void setRange(int from, int to, boolean value) {
+        if (from >= to) return;
+        selected.set(from, to, value);
+        fire(from, to - 1);
+    }
+
+    public void selectAll(int count) {
+        if (count <= 0) return;
+        anchorIndex = 0;
+        setRange(0, count, true);
+    }
+
+    public void clear() {
+        if (selected.isEmpty()) return;
+        int first = selected.nextSetBit(0);
+        int last = selected.length() - 1;
+        selected.clear();
+        fire(first, last);
+    }
+
+    /**
+     * 清空选择和范围起点，切换目录时使用。
+     */
+    public void reset() {
+        clear();
+        anchorIndex = -1;
+    }
+
+    /**
+     * 整体替换为给定集合，按发生变化的连续区间分别发事件，
+     * 拖动框选时每帧只有框边缘的少数格子需要重绘。
+     */
+    public void setSelection(BitSet newSelection) {
+        BitSet changed = (BitSet) selected.clone();
+        changed.xor(newSelection);
+        if (changed.isEmpty()) return;
+        selected.xor(changed);
+        for (int first = changed.nextSetBit(0); first >= 0; first = changed.nextSetBit(first)) {
+            int end = changed.nextClearBit(first);
+            fire(first, end - 1);
+            first = end;
+        }
+    }
+
+    /**
+     * 列表中删除了removed中的索引，其后的选中状态随之前移。
+     */
+    public void removeIndices(BitSet removed) {
+        if (removed.isEmpty()) return;
+        int first = removed.nextSetBit(0);
+        int oldLast = selected.length() - 1;
+        BitSet compacted = new BitSet();
+        int r = first;
+        int count = 0;
+        for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+            while (r >= 0 && r < i) {
+                count++;
+                r = removed.nextSetBit(r + 1);
+            }
+            if (r != i) compacted.set(i - count);
+        }
+        if (anchorIndex >= 0) {
+            anchorIndex = removed.get(anchorIndex) ? -1 : anchorIndex - removed.get(0, anchorIndex).cardinality();
+        }
+        selected.clear();
+        selected.or(compacted);
+        if (oldLast >= first) {
+            fire(first, oldLast);
+        }
+    }
+
+    /**
+     * 鼠标点击的选择语义：Ctrl切换，Shift从起点做范围选择，否则单选并记为新起点。
+     */
+    public void click(int index, boolean toggle, boolean extend) {
+        if (toggle) {
+            // Ctrl+点击：切换选中状态
+            setSelected(index, !selected.get(index));
+        } else if (extend && anchorIndex != -1) {
+            // Shift+点击：范围选择
+            setRange(Math.min(anchorIndex, index), Math.max(anchorIndex, index) + 1, true);
+        } else {
+            // 普通点击：单选模式
+            clear();
+            setSelected(index, true);
+            anchorIndex = index;
+        }
+    }
+
+    private void fire(int first, int last) {
+        for (Listener listener : listeners) {
+            listener.selectionChanged(first, last);
+        }
+    }
+}
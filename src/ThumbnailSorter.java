@@ -0,0 +1,322 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 缩略图网格排序和筛选用的预计算键。
+ * <p>
+ * 构建时在后台一次性读取文件属性，连同文件头信息换算成每个排序键上的名次（int数组），
+ * 文件名按自然顺序预先排好。之后每次排序只把(名次, 下标)压进一个long数组排序，
+ * 不访问磁盘也不比较字符串，两万张图片重新排序只需一两毫秒。
+ */
+public class ThumbnailSorter {
+    public enum SortMode {
+        NONE("默认顺序"), NAME("名称"), SIZE("大小"), MODIFIED("修改时间"), CAPTURED("拍摄时间");
+
+        private final String label;
+
+        SortMode(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * 筛选条件。extension为null表示不限类型；尺寸按长边、短边分别比较，横竖图一视同仁，为0表示不限。
+     */
+    public static final class Filter {
+        public static final Filter NONE = new Filter(null, 0, 0);
+
+        private final String extension;
+        private final int minLongSide;
+        private final int minShortSide;
+
+        public Filter(String extension, int minWidth, int minHeight) {
+            this.extension = extension == null ? null : extension.toLowerCase();
+            this.minLongSide = Math.max(minWidth, minHeight);
+            this.minShortSide = Math.min(minWidth, minHeight);
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public int getMinLongSide() {
+            return minLongSide;
+        }
+
+        public int getMinShortSide() {
+            return minShortSide;
+        }
+
+        public boolean isEmpty() {
+            return extension == null && minLongSide == 0;
+        }
+
+        public Filter withExtension(String extension) {
+            return new Filter(extension, minLongSide, minShortSide);
+        }
+
+        public Filter withMinSize(int width, int height) {
+            return new Filter(extension, width, height);
+        }
+    }
+
+    private final List<File> files;
+    // 各排序键上的稠密名次，键相同名次相同；拍摄时间未知为-1
+    private final int[] nameRanks;
+    private final int[] sizeRanks;
+    private final int[] modifiedRanks;
+    private final int[] capturedRanks;
+    private final int[] widths;
+    private final int[] heights;
+    private final int[] extensionIds;
+    private final String[] extensions;
+    private final long totalSize;
+
+    private ThumbnailSorter(List<File> files, long[] sizes, long[] modified, long[] captured, int[] widths,
+                            int[] heights, int[] nameRanks, int[] extensionIds, String[] extensions) {
+        this.files = files;
+        this.nameRanks = nameRanks;
+        this.sizeRanks = denseRanks(sizes);
+        this.modifiedRanks = denseRanks(modified);
+        this.capturedRanks = denseRanks(captured);
+        for (int i = 0; i < captured.length; i++) {
+            if (captured[i] == 0) capturedRanks[i] = -1;
+        }
+        this.widths = widths;
+        this.heights = heights;
+        this.extensionIds = extensionIds;
+        this.extensions = extensions;
+        long total = 0;
+        for (long size : sizes) total += size;
+        this.totalSize = total;
+    }
+
+    /**
+     * 在后台线程构建，每个文件读取一次属性。metadata与files一一对应，可以为null或含null（尺寸、拍摄时间未知）。
+     */
+    public static ThumbnailSorter build(List<File> files, ImageMetadata[] metadata) {
+        int n = files.size();
+        long[] sizes = new long[n];
+        long[] modified = new long[n];
+        long[] captured = new long[n];
+        int[] widths = new int[n];
+        int[] heights = new int[n];
+        int[] extensionIds = new int[n];
+        Map<String, Integer> extensionMap = new HashMap<>();
+        List<String> extensionList = new ArrayList<>();
+        String[] names = new String[n];
+        for (int i = 0; i < n; i++) {
+            File file = files.get(i);
+            try {
+                // 一次系统调用同时拿到长度和修改时间
+                BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+                sizes[i] = attrs.size();
+                modified[i] = attrs.lastModifiedTime().toMillis();
+            } catch (IOException e) {
+                // 文件已被删除等情况，键保持0，等目录监视的删除事件
+            }
+            ImageMetadata m = metadata == null ? null : metadata[i];
+            if (m != null) {
+                captured[i] = m.getCaptureTime();
+                widths[i] = m.getDisplayWidth();
+                heights[i] = m.getDisplayHeight();
+            }
+            names[i] = file.getName();
+            String extension = extensionOf(names[i]);
+            extensionIds[i] = extensionMap.computeIfAbsent(extension, e -> {
+                extensionList.add(e);
+                return extensionList.size() - 1;
+            });
+        }
+        return new ThumbnailSorter(List.copyOf(files), sizes, modified, captured, widths, heights,
+            rankNames(names), extensionIds, extensionList.toArray(new String[0]));
+    }
+
+    // 名称比较较慢，只在构建时排一次，得到并列名次相同的稠密名次
+    private static int[] rankNames(String[] names) {
+        Integer[] order = new Integer[names.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> compareNatural(names[a], names[b]));
+        int[] ranks = new int[names.length];
+        int rank = 0;
+        for (int k = 0; k < order.length; k++) {
+            if (k > 0 && compareNatural(names[order[k - 1]], names[order[k]]) != 0) rank++;
+            ranks[order[k]] = rank;
+        }
+        return ranks;
+    }
+
+    /**
+     * 自然顺序：忽略大小写，连续数字按数值比较，"IMG_9"排在"IMG_10"之前。
+     */
+    public static int compareNatural(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            char ca = a.charAt(i);
+            char cb = b.charAt(j);
+            if (Character.isDigit(ca) && Character.isDigit(cb)) {
+                // 跳过前导零后，位数多的数值大，位数相同再逐位比较
+                int si = i;
+                int sj = j;
+                while (si < a.length() - 1 && a.charAt(si) == '0' && Character.isDigit(a.charAt(si + 1))) si++;
+                while (sj < b.length() - 1 && b.charAt(sj) == '0' && Character.isDigit(b.charAt(sj + 1))) sj++;
+                int ei = si;
+                int ej = sj;
+                while (ei < a.length() && Character.isDigit(a.charAt(ei))) ei++;
+                while (ej < b.length() && Character.isDigit(b.charAt(ej))) ej++;
+                if (ei - si != ej - sj) return (ei - si) - (ej - sj);
+                for (int k = 0; k < ei - si; k++) {
+                    int d = a.charAt(si + k) - b.charAt(sj + k);
+                    if (d != 0) return d;
+                }
+                i = ei;
+                j = ej;
+            } else {
+                int d = Character.toLowerCase(ca) - Character.toLowerCase(cb);
+                if (d != 0) return d;
+                i++;
+                j++;
+            }
+        }
+        if (i < a.length() || j < b.length()) return (a.length() - i) - (b.length() - j);
+        // 只有大小写或前导零不同，按原字符串定序
+        return a.compareTo(b);
+    }
+
+    private static String extensionOf(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 && dot < name.length() - 1 ? name.substring(dot + 1).toLowerCase() : "";
+    }
+
+    /** 构建时的文件列表，order返回的下标指向这里 */
+    public List<File> getFiles() {
+        return files;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    /** 出现过的扩展名（小写），按首次出现顺序 */
+    public String[] getExtensions() {
+        return extensions.clone();
+    }
+
+    /**
+     * 返回通过筛选的文件下标，按排序键排列；键相同的保持原顺序。
+     * 拍摄时间未知的图片无论正序倒序都排在最后。
+     */
+    public int[] order(SortMode mode, boolean descending, Filter filter) {
+        int n = files.size();
+        int extension = -1;
+        if (filter.getExtension() != null) {
+            extension = Arrays.asList(extensions).indexOf(filter.getExtension());
+            if (extension < 0) return new int[0];
+        }
+        int[] kept = new int[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (extension >= 0 && extensionIds[i] != extension) continue;
+            if (filter.getMinLongSide() > 0) {
+                int longSide = Math.max(widths[i], heights[i]);
+                int shortSide = Math.min(widths[i], heights[i]);
+                if (longSide < filter.getMinLongSide() || shortSide < filter.getMinShortSide()) continue;
+            }
+            kept[count++] = i;
+        }
+        return sort(Arrays.copyOf(kept, count), mode, descending);
+    }
+
+    /**
+     * 分组结果（相似图片、重复文件）用：不筛选，各组保持原来的先后和连续，只在组内按排序键排列。
+     * groups与getFiles()一一对应，为组号，组号按第一次出现的顺序排列各组；小于0的排在最后。
+     */
+    public int[] orderInGroups(SortMode mode, boolean descending, int[] groups) {
+        int n = files.size();
+        // 按组号做稳定的计数排序，组内保持原顺序
+        int groupCount = 0;
+        for (int g : groups) groupCount = Math.max(groupCount, g + 1);
+        int[] starts = new int[groupCount + 2];
+        for (int g : groups) starts[(g < 0 ? groupCount : g) + 1]++;
+        for (int g = 0; g <= groupCount; g++) starts[g + 1] += starts[g];
+        int[] byGroup = new int[n];
+        int[] next = Arrays.copyOf(starts, starts.length);
+        for (int i = 0; i < n; i++) {
+            byGroup[next[groups[i] < 0 ? groupCount : groups[i]]++] = i;
+        }
+        int[] result = new int[n];
+        for (int g = 0; g <= groupCount; g++) {
+            int[] sorted = sort(Arrays.copyOfRange(byGroup, starts[g], starts[g + 1]), mode, descending);
+            System.arraycopy(sorted, 0, result, starts[g], sorted.length);
+        }
+        return result;
+    }
+
+    // 按排序键排列kept中的下标（kept为升序），键相同的保持原顺序
+    private int[] sort(int[] kept, SortMode mode, boolean descending) {
+        int n = files.size();
+        int count = kept.length;
+        if (mode == SortMode.NONE) {
+            if (descending) reverse(kept);
+            return kept;
+        }
+
+        int[] ranks;
+        switch (mode) {
+            case NAME: ranks = nameRanks; break;
+            case SIZE: ranks = sizeRanks; break;
+            case MODIFIED: ranks = modifiedRanks; break;
+            default: ranks = capturedRanks; break;
+        }
+        // 高32位放名次，低32位放原下标，一次基本类型排序同时完成按键排序和并列时的稳定性
+        long unknown = (long) n + 1;
+        long[] packed = new long[count];
+        for (int k = 0; k < count; k++) {
+            int i = kept[k];
+            long rank = ranks[i] < 0 ? unknown : descending ? n - ranks[i] : ranks[i];
+            packed[k] = rank << 32 | i;
+        }
+        Arrays.sort(packed);
+        int[] result = new int[count];
+        for (int k = 0; k < count; k++) {
+            result[k] = (int) packed[k];
+        }
+        return result;
+    }
+
+    // long键压缩成稠密的int名次：排序去重后二分查找
+    private static int[] denseRanks(long[] values) {
+        long[] distinct = values.clone();
+        Arrays.sort(distinct);
+        int unique = 0;
+        for (int k = 0; k < distinct.length; k++) {
+            if (k == 0 || distinct[k] != distinct[unique - 1]) distinct[unique++] = distinct[k];
+        }
+        int[] ranks = new int[values.length];
+        for (int k = 0; k < values.length; k++) {
+            ranks[k] = Arrays.binarySearch(distinct, 0, unique, values[k]);
+        }
+        return ranks;
+    }
+
+    private static void reverse(int[] a) {
+        for (int i = 0, j = a.length - 1; i < j; i++, j--) {
+            int t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+    }
+}
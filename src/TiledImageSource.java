@@ -0,0 +1,249 @@
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 超大图片的分块解码：按缩放级别把图片切成固定大小的块，
+ * 只用ImageReadParam的源区域和子采样解码可见的块，解码结果放在有字节上限的LRU缓存中。
+ * <p>
+ * 级别L对应2^L倍子采样。ImageReader不是线程安全的，所有解码都在同一个后台线程中进行。
+ * <p>
+ * 块的划分和宽高都按EXIF方向转正后的显示坐标，解码时把块换算回文件中的存储区域，解码后再转正。
+ */
+public class TiledImageSource {
+    public static final int TILE_SIZE = 512;
+    private static final long CACHE_BYTES = Long.getLong("photomanager.tileCacheMB", 64) * 1024 * 1024;
+
+    private final ImageInputStream in;
+    private final ImageReader reader;
+    // 存储尺寸
+    private final int storedWidth;
+    private final int storedHeight;
+    private final int orientation;
+    // 显示尺寸
+    private final int width;
+    private final int height;
+    private final Runnable onTileReady;
+
+    private final LinkedHashMap<Long, BufferedImage> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private long cacheBytes;
+    // 待解码的块，按请求时的优先顺序
+    private final LinkedHashSet<Long> pending = new LinkedHashSet<>();
+    private boolean workerRunning;
+    private volatile boolean closed;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "tile-decoder");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private TiledImageSource(ImageInputStream in, ImageReader reader, int orientation, Runnable onTileReady)
+            throws IOException {
+        this.in = in;
+        this.reader = reader;
+        this.storedWidth = reader.getWidth(0);
+        this.storedHeight = reader.getHeight(0);
+        this.orientation = orientation;
+        boolean transposed = orientation >= 5 && orientation <= 8;
+        this.width = transposed ? storedHeight : storedWidth;
+        this.height = transposed ? storedWidth : storedHeight;
+        this.onTileReady = onTileReady;
+    }
+
+    /**
+     * 打开图片，只读取文件头。无法识别的格式返回null。
+     * onTileReady在解码线程中调用，调用方自行切换到EDT。
+     */
+    public static TiledImageSource open(File file, Runnable onTileReady) throws IOException {
+        int orientation = ImageMetadataReader.read(file).getOrientation();
+        ImageInputStream in = ImageIO.createImageInputStream(file);
+        if (in == null) return null;
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()) {
+            in.close();
+            return null;
+        }
+        ImageReader reader = readers.next();
+        try {
+            // 需要多次读取不同区域，不能只向前查找
+            reader.setInput(in, false, true);
+            return new TiledImageSource(in, reader, orientation, onTileReady);
+        } catch (IOException | RuntimeException e) {
+            reader.dispose();
+            in.close();
+            throw e;
+        }
+    }
+
+    /** 按EXIF方向转正后的宽度 */
+    public int getWidth() {
+        return width;
+    }
+
+    /** 按EXIF方向转正后的高度 */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 显示宽度为displayWidth时使用的级别：不低于显示分辨率的最粗级别。
+     */
+    public int levelFor(int displayWidth) {
+        int level = 0;
+        while (levelWidth(level + 1) >= displayWidth && (width >> (level + 1)) > 0) {
+            level++;
+        }
+        return level;
+    }
+
+    public int levelWidth(int level) {
+        return (width + (1 << level) - 1) >> level;
+    }
+
+    public int levelHeight(int level) {
+        return (height + (1 << level) - 1) >> level;
+    }
+
+    private static long key(int level, int tx, int ty) {
+        return (long) level << 48 | (long) ty << 24 | tx;
+    }
+
+    /**
+     * 已解码的块，未缓存时返回null。
+     */
+    public synchronized BufferedImage getTile(int level, int tx, int ty) {
+        return cache.get(key(level, tx, ty));
+    }
+
+    /**
+     * 请求解码级别level中 [tx0, tx1] x [ty0, ty1] 内尚未缓存的块，替换之前未开始的请求。
+     */
+    public synchronized void request(int level, int tx0, int ty0, int tx1, int ty1) {
+        if (closed) return;
+        pending.clear();
+        for (int ty = ty0; ty <= ty1; ty++) {
+            for (int tx = tx0; tx <= tx1; tx++) {
+                long k = key(level, tx, ty);
+                if (!cache.containsKey(k)) {
+                    pending.add(k);
+                }
+            }
+        }
+        if (!pending.isEmpty() && !workerRunning) {
+            workerRunning = true;
+            executor.execute(this::runWorker);
+        }
+    }
+
+    private synchronized Long next() {
+        Iterator<Long> it = pending.iterator();
+        if (closed || !it.hasNext()) {
+            workerRunning = false;
+            return null;
+        }
+        Long k = it.next();
+        it.remove();
+        return k;
+    }
+
+    private void runWorker() {
+        Long k;
+        while ((k = next()) != null) {
+            int level = (int) (k >>> 48);
+            int ty = (int) ((k >>> 24) & 0xFFFFFF);
+            int tx = (int) (k & 0xFFFFFF);
+            BufferedImage tile;
+            try {
+                tile = decodeTile(level, tx, ty);
+            } catch (Exception e) {
+                if (!closed) e.printStackTrace();
+                continue;
+            }
+            synchronized (this) {
+                if (closed) return;
+                put(k, tile);
+            }
+            onTileReady.run();
+        }
+    }
+
+    private BufferedImage decodeTile(int level, int tx, int ty) throws IOException {
+        int step = 1 << level;
+        int x = tx * TILE_SIZE * step;
+        int y = ty * TILE_SIZE * step;
+        Rectangle region = storedRegion(x, y,
+            Math.min(TILE_SIZE * step, width - x), Math.min(TILE_SIZE * step, height - y));
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(region);
+        param.setSourceSubsampling(step, step, 0, 0);
+        return ThumbnailDecoder.applyOrientation(reader.read(0, param), orientation);
+    }
+
+    // 显示坐标中的矩形对应的存储区域，与ThumbnailDecoder.applyOrientation的变换互逆
+    private Rectangle storedRegion(int x, int y, int w, int h) {
+        int sw = storedWidth;
+        int sh = storedHeight;
+        switch (orientation) {
+            case 2: return new Rectangle(sw - x - w, y, w, h);
+            case 3: return new Rectangle(sw - x - w, sh - y - h, w, h);
+            case 4: return new Rectangle(x, sh - y - h, w, h);
+            case 5: return new Rectangle(y, x, h, w);
+            case 6: return new Rectangle(y, sh - x - w, h, w);
+            case 7: return new Rectangle(sw - y - h, sh - x - w, h, w);
+            case 8: return new Rectangle(sw - y - h, x, h, w);
+            default: return new Rectangle(x, y, w, h);
+        }
+    }
+
+    private void put(long k, BufferedImage tile) {
+        BufferedImage old = cache.put(k, tile);
+        if (old != null) cacheBytes -= sizeOf(old);
+        cacheBytes += sizeOf(tile);
+        Iterator<Map.Entry<Long, BufferedImage>> it = cache.entrySet().iterator();
+        while (cacheBytes > CACHE_BYTES && it.hasNext()) {
+            Map.Entry<Long, BufferedImage> eldest = it.next();
+            if (eldest.getKey() == k) break;
+            it.remove();
+            cacheBytes -= sizeOf(eldest.getValue());
+        }
+    }
+
+    private static long sizeOf(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * image.getColorModel().getPixelSize() / 8;
+    }
+
+    /**
+     * 停止解码，释放读取器和缓存。
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            pending.clear();
+            cache.clear();
+            cacheBytes = 0;
+        }
+        // 中止正在解码的块，结束后再释放读取器
+        reader.abort();
+        executor.execute(() -> {
+            reader.dispose();
+            try {
+                in.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,369 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * 虚拟化缩略图网格：整个目录只用一个组件，只绘制视口内的格子，
+ * 鼠标坐标按网格几何换算成索引。格子外观与 {@link Thumbnail} 保持一致。
+ */
+public class VirtualThumbnailGrid extends JComponent {
+    private static final int CELL = Thumbnail.CELL_SIZE;
+    private static final int GAP = 10;
+
+    private List<File> files = new ArrayList<>();
+    private BufferedImage[] images = new BufferedImage[0];
+    private final BitSet loaded = new BitSet();
+    private final BitSet failed = new BitSet();
+    private final ThumbnailSelectionModel selection;
+    private final Listener listener;
+
+    public interface Listener {
+        /** 双击打开图片 */
+        void openItem(int index);
+
+        /** 弹出右键菜单，选中状态已更新 */
+        void showContextMenu(MouseEvent e);
+
+        void selectionChanged(int selectedCount);
+    }
+
+    public VirtualThumbnailGrid(ThumbnailSelectionModel selection, Listener listener) {
+        this.selection = selection;
+        this.listener = listener;
+        selection.addListener(this::repaintCells);
+        setOpaque(true);
+        setBackground(UIManager.getColor("Panel.background"));
+        setFont(UIManager.getFont("Label.font"));
+        GridMouseListener mouse = new GridMouseListener();
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+    }
+
+    public void setFiles(List<File> files) {
+        this.files = files;
+        this.images = new BufferedImage[files.size()];
+        loaded.clear();
+        failed.clear();
+        revalidate();
+        repaint();
+    }
+
+    public void setImage(int index, BufferedImage image) {
+        if (index >= images.length) return;
+        images[index] = image;
+        loaded.set(index);
+        if (image == null) {
+            failed.set(index);
+        }
+        repaint(cellBounds(index));
+    }
+
+    /**
+     * 共享的文件列表末尾追加了文件后调用。
+     */
+    public void filesAppended() {
+        images = java.util.Arrays.copyOf(images, files.size());
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * 共享的文件列表删除了removed中的索引后调用，已解码的图片随之前移。
+     */
+    public void filesRemoved(BitSet removed) {
+        BufferedImage[] compacted = new BufferedImage[files.size()];
+        BitSet newLoaded = new BitSet();
+        BitSet newFailed = new BitSet();
+        for (int i = 0, j = 0; i < images.length && j < compacted.length; i++) {
+            if (removed.get(i)) continue;
+            compacted[j] = images[i];
+            if (loaded.get(i)) newLoaded.set(j);
+            if (failed.get(i)) newFailed.set(j);
+            j++;
+        }
+        images = compacted;
+        loaded.clear();
+        loaded.or(newLoaded);
+        failed.clear();
+        failed.or(newFailed);
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * 共享的文件列表重新排列（排序、筛选）后调用。from[k]是新位置k原来的索引，-1表示之前不在列表中；
+     * 已解码的图片随文件移动，不需要重新解码。
+     */
+    public void reorder(int[] from) {
+        BufferedImage[] moved = new BufferedImage[files.size()];
+        BitSet newLoaded = new BitSet();
+        BitSet newFailed = new BitSet();
+        for (int k = 0; k < from.length && k < moved.length; k++) {
+            int i = from[k];
+            if (i < 0 || i >= images.length) continue;
+            moved[k] = images[i];
+            if (loaded.get(i)) newLoaded.set(k);
+            if (failed.get(i)) newFailed.set(k);
+        }
+        images = moved;
+        loaded.clear();
+        loaded.or(newLoaded);
+        failed.clear();
+        failed.or(newFailed);
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * 文件内容已改变，丢弃已解码的图片，等待重新解码。
+     */
+    public void invalidateImage(int index) {
+        if (index >= images.length) return;
+        images[index] = null;
+        loaded.clear(index);
+        failed.clear(index);
+        repaint(cellBounds(index));
+    }
+
+    public boolean isLoaded(int index) {
+        return loaded.get(index);
+    }
+
+    /** 已有结果（含解码失败）的索引的副本 */
+    public BitSet getLoaded() {
+        return (BitSet) loaded.clone();
+    }
+
+    /**
+     * 释放 [from, to) 之外已加载的图片，保持内存占用与目录大小无关。
+     */
+    public void releaseOutside(int from, int to, IntConsumer onRelease) {
+        for (int i = loaded.nextSetBit(0); i >= 0 && i < from; i = loaded.nextSetBit(i + 1)) {
+            release(i, onRelease);
+        }
+        for (int i = loaded.nextSetBit(to); i >= 0; i = loaded.nextSetBit(i + 1)) {
+            release(i, onRelease);
+        }
+    }
+
+    private void release(int index, IntConsumer onRelease) {
+        images[index] = null;
+        loaded.clear(index);
+        failed.clear(index);
+        onRelease.accept(index);
+    }
+
+    // ---- 网格几何 ----
+
+    private int availableWidth() {
+        JViewport viewport = (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, this);
+        int width = viewport != null ? viewport.getExtentSize().width : getWidth();
+        return width > 0 ? width : Integer.MAX_VALUE;
+    }
+
+    public int getColumns() {
+        int width = availableWidth();
+        if (width == Integer.MAX_VALUE) return Math.max(1, files.size());
+        return Math.max(1, (width - GAP) / (CELL + GAP));
+    }
+
+    public int getRows() {
+        int columns = getColumns();
+        return (files.size() + columns - 1) / columns;
+    }
+
+    public Rectangle cellBounds(int index) {
+        int columns = getColumns();
+        int row = index / columns;
+        int col = index % columns;
+        return new Rectangle(GAP + col * (CELL + GAP), GAP + row * (CELL + GAP), CELL, CELL);
+    }
+
+    /**
+     * 坐标所在格子的索引，落在间隙或空白处时返回-1。
+     */
+    public int indexAt(Point p) {
+        if (p.x < GAP || p.y < GAP) return -1;
+        int col = (p.x - GAP) / (CELL + GAP);
+        int row = (p.y - GAP) / (CELL + GAP);
+        int columns = getColumns();
+        if (col >= columns) return -1;
+        if ((p.x - GAP) % (CELL + GAP) >= CELL || (p.y - GAP) % (CELL + GAP) >= CELL) return -1;
+        int index = row * columns + col;
+        return index < files.size() ? index : -1;
+    }
+
+    /**
+     * 与矩形相交的行范围内的索引区间 [first, last)，按整行计算。
+     */
+    public int[] rowSpan(Rectangle rect) {
+        int columns = getColumns();
+        int firstRow = Math.max(0, (rect.y - GAP) / (CELL + GAP));
+        int lastRow = Math.max(firstRow, (rect.y + rect.height - 1) / (CELL + GAP));
+        int first = Math.min(files.size(), firstRow * columns);
+        int last = Math.min(files.size(), (lastRow + 1) * columns);
+        return new int[]{first, last};
+    }
+
+    /**
+     * 与矩形相交的格子索引写入hits，按行列区间整段设置。
+     */
+    public void collectIntersecting(Rectangle rect, BitSet hits) {
+        if (rect.width <= 0 || rect.height <= 0 || files.isEmpty()) return;
+        int columns = getColumns();
+        int step = CELL + GAP;
+        int firstRow = Math.max(0, Math.floorDiv(rect.y - GAP - CELL, step) + 1);
+        int lastRow = Math.min(getRows() - 1, Math.floorDiv(rect.y + rect.height - GAP - 1, step));
+        int firstCol = Math.max(0, Math.floorDiv(rect.x - GAP - CELL, step) + 1);
+        int lastCol = Math.min(columns - 1, Math.floorDiv(rect.x + rect.width - GAP - 1, step));
+        if (firstCol > lastCol) return;
+        for (int row = firstRow; row <= lastRow; row++) {
+            int from = row * columns + firstCol;
+            int to = Math.min(files.size(), row * columns + lastCol + 1);
+            if (from < to) hits.set(from, to);
+        }
+    }
+
+    public int[] visibleRange() {
+        return rowSpan(getVisibleRect());
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        if (isPreferredSizeSet()) return super.getPreferredSize();
+        int columns = getColumns();
+        int width = GAP + columns * (CELL + GAP);
+        int height = GAP + getRows() * (CELL + GAP);
+        return new Dimension(width, height);
+    }
+
+    // ---- 绘制 ----
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        int[] span = rowSpan(clip);
+        FontMetrics fm = g.getFontMetrics(getFont());
+        for (int i = span[0]; i < span[1]; i++) {
+            Rectangle cell = cellBounds(i);
+            if (cell.intersects(clip)) {
+                paintCell((Graphics2D) g, i, cell, fm);
+            }
+        }
+    }
+
+    private void paintCell(Graphics2D g, int index, Rectangle cell, FontMetrics fm) {
+        int nameHeight = fm.getHeight();
+        int imageHeight = cell.height - nameHeight;
+        BufferedImage image = images[index];
+        g.setColor(getForeground());
+        g.setFont(getFont());
+        if (image != null) {
+            int x = cell.x + (cell.width - image.getWidth()) / 2;
+            int y = cell.y + (imageHeight - image.getHeight()) / 2;
+            g.drawImage(image, x, y, null);
+        } else if (failed.get(index)) {
+            drawCentered(g, fm, "无法预览", cell.x, cell.y, cell.width, imageHeight);
+        }
+        String name = elide(files.get(index).getName(), fm, cell.width - 4);
+        drawCentered(g, fm, name, cell.x, cell.y + imageHeight, cell.width, nameHeight);
+
+        if (selection.isSelected(index)) {
+            g.setColor(Thumbnail.SELECT_COLOR);
+            Stroke old = g.getStroke();
+            g.setStroke(new BasicStroke(3));
+            g.drawRect(cell.x + 1, cell.y + 1, cell.width - 3, cell.height - 3);
+            g.setStroke(old);
+        }
+    }
+
+    private static void drawCentered(Graphics g, FontMetrics fm, String text, int x, int y, int w, int h) {
+        int tx = x + (w - fm.stringWidth(text)) / 2;
+        int ty = y + (h - fm.getHeight()) / 2 + fm.getAscent();
+        g.drawString(text, tx, ty);
+    }
+
+    private static String elide(String text, FontMetrics fm, int maxWidth) {
+        if (fm.stringWidth(text) <= maxWidth) return text;
+        String ellipsis = "...";
+        int end = text.length();
+        while (end > 0 && fm.stringWidth(text.substring(0, end)) + fm.stringWidth(ellipsis) > maxWidth) {
+            end--;
+        }
+        return text.substring(0, end) + ellipsis;
+    }
+
+    private void repaintCells(int from, int to) {
+        to = Math.min(to, files.size() - 1);
+        if (from > to) return;
+        Rectangle dirty = cellBounds(from).union(cellBounds(to));
+        // 跨行时整行重绘
+        if (dirty.height > CELL) {
+            dirty.x = 0;
+            dirty.width = getWidth();
+        }
+        repaint(dirty);
+    }
+
+    // ---- 鼠标 ----
+
+    private class GridMouseListener extends MouseAdapter {
+        private Point startPoint;
+
+        @Override
+        public void mousePressed(MouseEvent e) {
+            startPoint = e.getPoint();
+            requestFocusInWindow();
+            if (SwingUtilities.isLeftMouseButton(e) && indexAt(e.getPoint()) < 0) {
+                // 空白区域点击取消选择
+                selection.clear();
+                listener.selectionChanged(0);
+            }
+        }
+
+        @Override
+        public void mouseClicked(MouseEvent e) {
+            int index = indexAt(e.getPoint());
+            if (index < 0 || !SwingUtilities.isLeftMouseButton(e)) return;
+            if (e.getClickCount() == 2) {
+                listener.openItem(index);
+                return;
+            }
+            selection.click(index, e.isControlDown(), e.isShiftDown());
+            listener.selectionChanged(selection.getSelectedCount());
+        }
+
+        @Override
+        public void mouseReleased(MouseEvent e) {
+            if (e.isPopupTrigger()) {
+                int index = indexAt(e.getPoint());
+                if (index >= 0) {
+                    selection.setSelected(index, true);
+                }
+                listener.showContextMenu(e);
+            }
+        }
+
+        @Override
+        public void mouseDragged(MouseEvent e) {
+            if (startPoint == null || !SwingUtilities.isLeftMouseButton(e)) return;
+            Rectangle rect = new Rectangle(startPoint);
+            rect.add(e.getPoint());
+            BitSet hit = new BitSet();
+            collectIntersecting(rect, hit);
+            selection.setSelection(hit);
+            listener.selectionChanged(selection.getSelectedCount());
+        }
+    }
+}
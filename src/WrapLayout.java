@@ -1,7 +1,37 @@
 import java.awt.*;
-import java.util.ArrayList;
+import java.util.BitSet;
+
+/**
+ * 自动换行的FlowLayout，缓存行几何信息以支持增量布局。
+ * <p>
+ * 组件追加到末尾时只重算最后一行及之后的行，也只重新摆放这些组件；
+ * 所有组件尺寸相同时直接按算术计算行列位置，不再逐个遍历。
+ * 组件增删由容器通知；已添加组件的首选尺寸如果改变，需调用 {@link #invalidateAll()}。
+ */
+public class WrapLayout extends FlowLayout implements LayoutManager2 {
+    // 非等尺寸时的行缓存
+    private int[] rowStart = new int[16];
+    private int[] rowY = new int[16];
+    private int[] rowHeight = new int[16];
+    private int[] rowWidth = new int[16];
+    private int rowCount;
+
+    // 所有已计算组件尺寸相同时的尺寸，否则为null
+    private Dimension uniform;
+    // 已计算几何信息的组件数
+    private int computedCount;
+    // 需要重新计算的第一个组件索引
+    private int dirtyFrom = Integer.MAX_VALUE;
+    // 需要重新摆放位置的第一个组件索引
+    private int placeFrom;
+
+    private Container cachedTarget;
+    private int cachedWidth = -1;
+    private Insets cachedInsets;
+    private int cachedHgap;
+    private int cachedVgap;
+    private int cachedAlign;
 
-public class WrapLayout extends FlowLayout {
     public WrapLayout() {
         super();
     }
@@ -16,15 +46,38 @@ public class WrapLayout extends FlowLayout {
 
     @Override
     public Dimension preferredLayoutSize(Container target) {
-        return layoutSize(target, true);
+        synchronized (target.getTreeLock()) {
+            update(target);
+            Insets insets = target.getInsets();
+            int hgap = getHgap();
+            int vgap = getVgap();
+            int rows = rowTotal();
+            int maxRowWidth = 0;
+            int height = 0;
+            if (uniform != null) {
+                int perRow = perRow();
+                int fullRows = Math.min(rows, computedCount / perRow);
+                if (rows > 0) {
+                    int widest = fullRows > 0 ? perRow : computedCount;
+                    maxRowWidth = widest * uniform.width + (widest - 1) * hgap;
+                }
+                height = rows * (uniform.height + vgap);
+            } else {
+                for (int r = 0; r < rowCount; r++) {
+                    maxRowWidth = Math.max(maxRowWidth, rowWidth[r]);
+                    height += rowHeight[r] + vgap;
+                }
+            }
+            if (rows == 0) {
+                height = vgap;
+            }
+            return new Dimension(maxRowWidth + hgap * 2 + insets.left + insets.right,
+                height + insets.top + insets.bottom);
+        }
     }
 
     @Override
     public Dimension minimumLayoutSize(Container target) {
-        return layoutSize(target, false);
-    }
-
-    private Dimension layoutSize(Container target, boolean preferred) {
         synchronized (target.getTreeLock()) {
             int targetWidth = target.getSize().width;
             if (targetWidth == 0)
@@ -44,7 +97,7 @@ public class WrapLayout extends FlowLayout {
             for (int i = 0; i < nmembers; i++) {
                 Component m = target.getComponent(i);
                 if (m.isVisible()) {
-                    Dimension d = preferred ? m.getPreferredSize() : m.getMinimumSize();
+                    Dimension d = m.getMinimumSize();
                     if (rowWidth + d.width > maxWidth) {
                         dim.width = Math.max(dim.width, rowWidth);
                         dim.height += rowHeight + vgap;
@@ -66,4 +119,366 @@ public class WrapLayout extends FlowLayout {
             return dim;
         }
     }
+
+    @Override
+    public void layoutContainer(Container target) {
+        synchronized (target.getTreeLock()) {
+            update(target);
+            int n = target.getComponentCount();
+            if (placeFrom >= n) {
+                placeFrom = n;
+                return;
+            }
+            Insets insets = target.getInsets();
+            int x0 = insets.left + getHgap();
+            if (uniform != null) {
+                placeUniform(target, placeFrom, n, x0);
+            } else {
+                placeRows(target, rowIndexOf(placeFrom), x0);
+            }
+            placeFrom = n;
+        }
+    }
+
+    /**
+     * 把与矩形相交的组件索引写入hits。等尺寸时按行列算术直接得出，
+     * 否则二分查找相交的行，只检查这些行内的组件。
+     */
+    public void collectIntersecting(Container target, Rectangle rect, BitSet hits) {
+        synchronized (target.getTreeLock()) {
+            if (rect.width <= 0 || rect.height <= 0) return;
+            update(target);
+            int n = computedCount;
+            if (n == 0) return;
+            int x0 = cachedInsets.left + getHgap();
+            if (uniform != null) {
+                collectUniform(target, rect, n, x0, hits);
+            } else {
+                collectRows(target, rect, n, hits);
+            }
+        }
+    }
+
+    /**
+     * 丢弃全部缓存，下次布局时完整重算。
+     */
+    public void invalidateAll() {
+        rowCount = 0;
+        computedCount = 0;
+        uniform = null;
+        dirtyFrom = Integer.MAX_VALUE;
+        placeFrom = 0;
+    }
+
+    // ---- LayoutManager2：借助增删通知维护缓存 ----
+
+    @Override
+    public void addLayoutComponent(Component comp, Object constraints) {
+        Container parent = comp.getParent();
+        if (parent == null) {
+            invalidateAll();
+            return;
+        }
+        int n = parent.getComponentCount();
+        // 追加到末尾的情况在update中按数量变化处理
+        if (n == 0 || parent.getComponent(n - 1) != comp) {
+            markDirty(parent.getComponentZOrder(comp));
+        }
+    }
+
+    @Override
+    public void removeLayoutComponent(Component comp) {
+        Container parent = comp.getParent();
+        if (parent == null) {
+            invalidateAll();
+            return;
+        }
+        int index = parent.getComponentZOrder(comp);
+        // removeAll从末尾逐个移除，此时组件已不在列表中
+        markDirty(index >= 0 ? index : parent.getComponentCount());
+    }
+
+    @Override
+    public Dimension maximumLayoutSize(Container target) {
+        return new Dimension(Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public float getLayoutAlignmentX(Container target) {
+        return 0.5f;
+    }
+
+    @Override
+    public float getLayoutAlignmentY(Container target) {
+        return 0.5f;
+    }
+
+    @Override
+    public void invalidateLayout(Container target) {
+        // 子组件重绘引起的invalidate不影响几何，缓存保留
+    }
+
+    private void markDirty(int index) {
+        dirtyFrom = Math.min(dirtyFrom, Math.max(0, index));
+    }
+
+    // ---- 几何计算 ----
+
+    private int maxWidth() {
+        if (cachedWidth == Integer.MAX_VALUE) return Integer.MAX_VALUE;
+        return cachedWidth - (cachedInsets.left + cachedInsets.right + getHgap() * 2);
+    }
+
+    private int perRow() {
+        long fit = ((long) maxWidth() + getHgap()) / Math.max(1, uniform.width + getHgap());
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, fit));
+    }
+
+    private int rowTotal() {
+        if (uniform == null) return rowCount;
+        int perRow = perRow();
+        return (computedCount + perRow - 1) / perRow;
+    }
+
+    private void update(Container target) {
+        int width = target.getWidth();
+        if (width == 0) width = Integer.MAX_VALUE;
+        Insets insets = target.getInsets();
+        if (target != cachedTarget || width != cachedWidth || !insets.equals(cachedInsets)
+                || getHgap() != cachedHgap || getVgap() != cachedVgap || getAlignment() != cachedAlign) {
+            cachedTarget = target;
+            cachedWidth = width;
+            cachedInsets = insets;
+            cachedHgap = getHgap();
+            cachedVgap = getVgap();
+            cachedAlign = getAlignment();
+            invalidateAll();
+        }
+
+        int n = target.getComponentCount();
+        if (dirtyFrom < computedCount || n < computedCount) {
+            truncate(Math.min(dirtyFrom, n));
+        }
+        dirtyFrom = Integer.MAX_VALUE;
+        if (computedCount == n) return;
+
+        if (uniform != null || computedCount == 0) {
+            if (extendUniform(target, n)) return;
+            // 出现不同尺寸的组件，转换为逐行缓存
+            uniform = null;
+            rowCount = 0;
+            computedCount = 0;
+        }
+        extendRows(target, n);
+    }
+
+    private void truncate(int index) {
+        if (uniform != null) {
+            int perRow = perRow();
+            computedCount = index;
+            placeFrom = Math.min(placeFrom, index / perRow * perRow);
+        } else {
+            // 丢弃包含该组件的行及之后的行
+            int r = Math.max(0, rowIndexOf(index));
+            rowCount = r;
+            computedCount = rowStart[r];
+            placeFrom = Math.min(placeFrom, computedCount);
+        }
+        if (computedCount == 0) {
+            uniform = null;
+        }
+    }
+
+    private boolean extendUniform(Container target, int n) {
+        Dimension size = uniform;
+        for (int i = computedCount; i < n; i++) {
+            Component c = target.getComponent(i);
+            if (!c.isVisible()) return false;
+            Dimension d = c.getPreferredSize();
+            if (size == null) {
+                size = d;
+            } else if (!size.equals(d)) {
+                return false;
+            }
+        }
+        uniform = size;
+        // 末行的位置可能随对齐方式变化，从末行开头重新摆放
+        int perRow = perRow();
+        placeFrom = Math.min(placeFrom, computedCount / perRow * perRow);
+        computedCount = n;
+        return true;
+    }
+
+    // 从最后一行开始重新排列，新组件可能接在最后一行后面
+    private void extendRows(Container target, int n) {
+        int hgap = getHgap();
+        int vgap = getVgap();
+        int maxWidth = maxWidth();
+        int start;
+        int y;
+        if (rowCount > 0) {
+            rowCount--;
+            start = rowStart[rowCount];
+            y = rowY[rowCount];
+        } else {
+            start = 0;
+            y = cachedInsets.top + vgap;
+        }
+        placeFrom = Math.min(placeFrom, start);
+
+        int x = 0;
+        int height = 0;
+        for (int i = start; i < n; i++) {
+            Component c = target.getComponent(i);
+            if (!c.isVisible()) continue;
+            Dimension d = c.getPreferredSize();
+            if (x == 0 || (long) x + hgap + d.width <= maxWidth) {
+                if (x > 0) x += hgap;
+                x += d.width;
+                height = Math.max(height, d.height);
+            } else {
+                addRow(start, y, height, x);
+                y += height + vgap;
+                start = i;
+                x = d.width;
+                height = d.height;
+            }
+        }
+        if (start < n) {
+            addRow(start, y, height, x);
+        }
+        computedCount = n;
+    }
+
+    private void addRow(int start, int y, int height, int width) {
+        if (rowCount == rowStart.length) {
+            int size = rowCount * 2;
+            rowStart = java.util.Arrays.copyOf(rowStart, size);
+            rowY = java.util.Arrays.copyOf(rowY, size);
+            rowHeight = java.util.Arrays.copyOf(rowHeight, size);
+            rowWidth = java.util.Arrays.copyOf(rowWidth, size);
+        }
+        rowStart[rowCount] = start;
+        rowY[rowCount] = y;
+        rowHeight[rowCount] = height;
+        rowWidth[rowCount] = width;
+        rowCount++;
+    }
+
+    // 包含指定组件索引的行，二分查找
+    private int rowIndexOf(int index) {
+        int lo = 0;
+        int hi = rowCount - 1;
+        int result = rowCount > 0 ? 0 : -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (rowStart[mid] <= index) {
+                result = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    private int alignOffset(Container target, int width) {
+        if (cachedWidth == Integer.MAX_VALUE) return 0;
+        int free = maxWidth() - width;
+        boolean ltr = target.getComponentOrientation().isLeftToRight();
+        switch (getAlignment()) {
+            case CENTER:
+                return free / 2;
+            case RIGHT:
+                return free;
+            case LEADING:
+                return ltr ? 0 : free;
+            case TRAILING:
+                return ltr ? free : 0;
+            default:
+                return 0;
+        }
+    }
+
+    private void placeUniform(Container target, int from, int n, int x0) {
+        int hgap = getHgap();
+        int vgap = getVgap();
+        int perRow = perRow();
+        int w = uniform.width;
+        int h = uniform.height;
+        int y0 = cachedInsets.top + vgap;
+        int offset = 0;
+        int offsetRow = -1;
+        for (int i = from; i < n; i++) {
+            int row = i / perRow;
+            int col = i % perRow;
+            if (row != offsetRow) {
+                int count = Math.min(perRow, n - row * perRow);
+                offset = alignOffset(target, count * w + (count - 1) * hgap);
+                offsetRow = row;
+            }
+            target.getComponent(i).setBounds(x0 + offset + col * (w + hgap), y0 + row * (h + vgap), w, h);
+        }
+    }
+
+    // 与placeUniform使用同一套坐标公式
+    private void collectUniform(Container target, Rectangle rect, int n, int x0, BitSet hits) {
+        int hgap = getHgap();
+        int vgap = getVgap();
+        int perRow = perRow();
+        int w = uniform.width;
+        int h = uniform.height;
+        int y0 = cachedInsets.top + vgap;
+        int rows = (n + perRow - 1) / perRow;
+        int firstRow = Math.max(0, Math.floorDiv(rect.y - y0 - h, h + vgap) + 1);
+        int lastRow = Math.min(rows - 1, Math.floorDiv(rect.y + rect.height - y0 - 1, h + vgap));
+        for (int row = firstRow; row <= lastRow; row++) {
+            int count = Math.min(perRow, n - row * perRow);
+            int x = x0 + alignOffset(target, count * w + (count - 1) * hgap);
+            int firstCol = Math.max(0, Math.floorDiv(rect.x - x - w, w + hgap) + 1);
+            int lastCol = Math.min(count - 1, Math.floorDiv(rect.x + rect.width - x - 1, w + hgap));
+            if (firstCol <= lastCol) {
+                hits.set(row * perRow + firstCol, row * perRow + lastCol + 1);
+            }
+        }
+    }
+
+    private void collectRows(Container target, Rectangle rect, int n, BitSet hits) {
+        // 第一个底边在矩形上边之下的行
+        int lo = 0;
+        int hi = rowCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (rowY[mid] + rowHeight[mid] <= rect.y) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int r = lo; r < rowCount && rowY[r] < rect.y + rect.height; r++) {
+            int end = r + 1 < rowCount ? rowStart[r + 1] : n;
+            for (int i = rowStart[r]; i < end; i++) {
+                Component c = target.getComponent(i);
+                if (c.isVisible() && c.getBounds().intersects(rect)) {
+                    hits.set(i);
+                }
+            }
+        }
+    }
+
+    private void placeRows(Container target, int firstRow, int x0) {
+        int hgap = getHgap();
+        int n = target.getComponentCount();
+        for (int r = Math.max(0, firstRow); r < rowCount; r++) {
+            int end = r + 1 < rowCount ? rowStart[r + 1] : n;
+            int x = x0 + alignOffset(target, rowWidth[r]);
+            for (int i = rowStart[r]; i < end; i++) {
+                Component c = target.getComponent(i);
+                if (!c.isVisible()) continue;
+                Dimension d = c.getPreferredSize();
+                c.setBounds(x, rowY[r] + (rowHeight[r] - d.height) / 2, d.width, d.height);
+                x += d.width + hgap;
+            }
+        }
+    }
 }